@@ -1,9 +1,22 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
 /**
  *
  * AVLTree
  *
  * An implementation of aמ AVL Tree with
  * distinct integer keys and info.
+ * Every int value is a legal key, virtual nodes are told apart by isRealNode only.
+ * Lookups are scalar: a node holds one key, so there is no packed key block for a SIMD compare, and the
+ * Vector API (jdk.incubator.vector) is an incubator module this project doesn't build or run with.
+ * The read-mostly packed layout is FrozenAVLTree, whose descent is branch-free instead.
  *
  */
 
@@ -15,13 +28,49 @@ public class AVLTree {
 	private AVLNode maxNode;
 	private int size;
 
-	// Used in keyToArray and valueToArray methods
+	// Used in keyToArray and valueToArray methods, valid while cachedModCount == modCount.
+	// Never modified once built (a change builds new arrays), so views of them stay consistent snapshots.
 	private int[] inOrderKeyArray;
 	private String[] inOrderValueArray;
+	private int modCount; // Incremented by every change of the tree's items.
+	private int cachedModCount;
 
 	// Virtual Node
 	private final AVLNode VIRTUAL_NODE = new AVLNode();
 
+	// Last node reached by fingerSearch/fingerInsert (null if unknown), the start point of the next finger operation.
+	private AVLNode finger;
+
+	// Rebalancing policy, and the number of deletions done without rebalancing since the last rebuild.
+	private RebalancePolicy rebalancePolicy = RebalancePolicy.AVL;
+	private int relaxedDeletions;
+
+	// Subtrees up to this size are exported by a single thread (see exportTo).
+	private static final int PARALLEL_EXPORT_THRESHOLD = 1 << 13;
+
+	// Free-list of deleted nodes reused by insert (disabled while the capacity is 0).
+	private AVLNode[] nodePool = new AVLNode[0];
+	private int nodePoolSize;
+
+	// Optional subtree aggregate, maintained together with the size field (null when not used).
+	private Aggregate aggregate;
+
+	// Optional membership filter in front of searchNode (null when not used), see setMembershipFilter.
+	// May be shared with the other part of a split, since a superset of the keys never gives a false negative.
+	private BlockedBloomFilter membershipFilter;
+	private static final int MIN_MEMBERSHIP_FILTER_CAPACITY = 64;
+
+	// Optional hash index from keys to nodes (see setHashIndex), built lazily: null while stale or not used.
+	private boolean hashIndexed;
+	private NodeHashIndex hashIndex;
+
+	// Optional cache of recently searched nodes in front of search (null when not used).
+	// Only found nodes are cached, so inserts can't make an entry stale, deletes drop theirs.
+	private HotKeyCache frontCache;
+
+	// Optional feed of the tree's changes (null when not used), see setChangeFeed.
+	private ChangeFeed changeFeed;
+
 	/**
 	 * public boolean empty()
 	 * <p>
@@ -37,30 +86,98 @@ public class AVLTree {
 	 * <p>
 	 * Returns the info of an item with key k if it exists in the tree.
 	 * otherwise, returns null.
-	 * Uses method recSearch.
-	 * Complexity: O(log n)
+	 * Uses method searchNode, unless the node is in the front cache.
+	 * Complexity: O(log n), O(1) for a front cache hit
 	 * </p>
 	 */
 	public String search(int k) {
-		if (k <= 0) return null;
-		return recSearch(k, this.root);
+		HotKeyCache cache = this.frontCache;
+		AVLNode node = cache == null ? null : cache.get(k);
+		if (node == null) {
+			node = searchNode(k);
+			if (node == null) return null;
+			if (cache != null) cache.put(k, node);
+		}
+		else if (AVLTreeEvents.ENABLED) {
+			AVLTreeEvents.descent("cache", 0, true);
+		}
+		return node.getValue(); // Read from the node, so values set by compute or setValue are seen.
 	}
 
 	/**
-	 * private String recSearch(int k, IAVLNode node)
+	 * public void setFrontCache(int capacity)
 	 * <p>
-	 * Recursive sub function for a binary search in a BST.
-	 * Returns the info of an item with key k if it exists in the BST.
-	 * otherwise, returns null.
-	 * Supports search method.
-	 * Complexity: O(log n)
+	 * Puts a cache of capacity (rounded up) recently found nodes in front of search, so the hot keys of
+	 * a skewed access pattern are found without a descent. See HotKeyCache for its eviction policy,
+	 * and getFrontCache for its hit, miss and eviction counts.
+	 * Deleted keys are dropped from the cache, truncateBelow/Above, deleteRange and compact clear it,
+	 * and the trees returned by split start without a cache. Replaces the current cache, if any.
+	 * Complexity: O(capacity)
+	 * </p>
+	 */
+	public void setFrontCache(int capacity) {
+		this.frontCache = new HotKeyCache(capacity);
+	}
+
+	/**
+	 * public void removeFrontCache()
+	 * <p>
+	 * Drops the front cache.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public void removeFrontCache() {
+		this.frontCache = null;
+	}
+
+	/**
+	 * public void setChangeFeed(ChangeFeed feed)
+	 * <p>
+	 * Records the tree's changes in feed from now on (null stops recording), see ChangeFeed.
+	 * insert, delete and compute record a key event each; truncateBelow/Above and deleteRange record
+	 * a single DELETE_RANGE, join an INSERT_RANGE of the joined keys, and split a DELETE_RANGE of all keys
+	 * (the tree hands its items over to the two new trees, which start without a feed).
+	 * Changing an info through a node (setValue) is not recorded.
+	 * Without a feed, recording costs a null check per change.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public void setChangeFeed(ChangeFeed feed) {
+		this.changeFeed = feed;
+	}
+
+	/**
+	 * public ChangeFeed getChangeFeed()
+	 * <p>
+	 * Returns the feed the tree's changes are recorded in, or null if there is none.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public ChangeFeed getChangeFeed() {
+		return this.changeFeed;
+	}
+
+	/**
+	 * protected void recordChange(byte type, int key, String value)
+	 * <p>
+	 * Records a single key event in the change feed, if there is one.
+	 * Used by subclasses whose changes don't go through the tree's own insert and delete paths.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	protected void recordChange(byte type, int key, String value) {
+		if (this.changeFeed != null) this.changeFeed.record(type, key, key, value);
+	}
+
+	/**
+	 * public HotKeyCache getFrontCache()
+	 * <p>
+	 * Returns the front cache (for its statistics), or null if there is none.
+	 * Complexity: O(1)
 	 * </p>
 	 */
-	private String recSearch(int k, IAVLNode node){
-		if (node == null) return null;
-		if (node.getKey() == k) return node.getValue();
-		if (node.getKey() > k) return recSearch(k, node.getLeft());
-		else return recSearch(k, node.getRight());
+	public HotKeyCache getFrontCache() {
+		return this.frontCache;
 	}
 
 	// ---------- Deletion methods  ----------
@@ -73,22 +190,73 @@ public class AVLTree {
 	 * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
 	 * A promotion/rotation counts as one re-balance operation, double-rotation is counted as 2.
 	 * Returns -1 if an item with key k was not found in the tree.
-	 * Calls deleteRebalance iterative method.
+	 * Calls deleteNode method.
 	 * Complexity: O(log n)
 	 * </p>
 	 */
 	public int delete(int k) {
-
 		AVLNode node = searchNode(k);
 		if (node == null) return -1; // K is not part of the tree.
-		this.size -= 1; // Decrease size of the tree (K exists and will be deleted).
+		int changeCounter = deleteNode(node);
+		recycleNode(node);
+		return changeCounter;
+	}
+
+	/**
+	 * private void recycleNode(AVLNode node)
+	 * <p>
+	 * Puts a deleted (already unlinked) node on the free-list, if the pool has room.
+	 * Only plain AVLNodes are pooled, subclasses' nodes are left to the garbage collector.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void recycleNode(AVLNode node) {
+		if (this.nodePoolSize == this.nodePool.length || node.getClass() != AVLNode.class) return;
+		node.value = null; // Don't keep the deleted info reachable.
+		this.nodePool[this.nodePoolSize++] = node;
+	}
+
+	/**
+	 * public void setNodePoolCapacity(int capacity)
+	 * <p>
+	 * Sets the maximal number of deleted nodes kept for reuse by insert (0, the default, disables pooling).
+	 * With pooling, churn-heavy workloads (delete + insert) allocate no new nodes.
+	 * A node returned by getRoot or passed to join must not be used after its item was deleted,
+	 * since it may be reused for another item.
+	 * Complexity: O(capacity)
+	 * </p>
+	 */
+	public void setNodePoolCapacity(int capacity) {
+		AVLNode[] newPool = new AVLNode[capacity];
+		this.nodePoolSize = Math.min(this.nodePoolSize, capacity);
+		System.arraycopy(this.nodePool, 0, newPool, 0, this.nodePoolSize);
+		this.nodePool = newPool;
+	}
+
+	/**
+	 * protected int deleteNode(AVLNode node)
+	 * <p>
+	 * Unlinks node from the tree and rebalances the tree.
+	 * Returns the number of re-balancing operations.
+	 * Calls deleteRebalance iterative method.
+	 * precondition: node is a node of this tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected int deleteNode(AVLNode node) {
+		this.size -= node.weight(); // Decrease size of the tree (node's items are deleted).
+		this.modCount++;
+		if (this.hashIndex != null) this.hashIndex.remove(node.key); // Nodes are relinked, never copied, so the other entries stay valid.
+		if (this.frontCache != null) this.frontCache.remove(node.key);
+		if (this.changeFeed != null) this.changeFeed.record(ChangeFeed.DELETE, node.key, node.key, null);
+		if (this.finger == node) this.finger = null;
 
 		// Update min:
-		if (this.minNode.getKey() == k){
+		if (this.minNode == node){
 			this.minNode = getSuccessor(node);
 		}
 		// Update max:
-		if (this.maxNode.getKey() == k) {
+		if (this.maxNode == node) {
 			this.maxNode = getPredecessor(node);
 		}
 
@@ -97,6 +265,7 @@ public class AVLTree {
 			this.root = null;
 			this.minNode = null;
 			this.maxNode = null;
+			checkMembershipFilter();
 			return 0;
 		}
 
@@ -115,8 +284,8 @@ public class AVLTree {
 			if (node.getRight() != successor) { // Init successor's parent.
 				parentOfSuccessor = (AVLNode) successor.getParent();
 			}
-			else{
-				parentOfSuccessor = (AVLNode) node.getParent();
+			else{ // Successor replaces node and loses its right subtree height, rebalance starts from it.
+				parentOfSuccessor = successor;
 			}
 			// Detach successor and swaps node <-> successor.
 			removeBinaryNode(node, successor);
@@ -128,835 +297,2110 @@ public class AVLTree {
 			}
 		}
 
-		return deleteRebalance(parent);
+		int changeCounter = this.rebalancePolicy == RebalancePolicy.RELAXED
+				? relaxedDeleteRebalance(parent)
+				: deleteRebalance(parent);
+		checkMembershipFilter(); // The deleted key stays in the filter until the next rebuild.
+		return changeCounter;
 	}
 
 	/**
-	 * private AVLNode searchNode(int k)
+	 * private int relaxedDeleteRebalance(AVLNode node)
 	 * <p>
-	 * Performs a binary search in the BST,
-	 * returns the pointer to the node with node.key = k, or null if not found.
-	 * Calls recSearchNode method.
-	 * Complexity: O(log n)
+	 * Completes a deletion under the RELAXED policy: only the sizes from node to the root are updated,
+	 * heights are kept as they are (they become ranks, upper bounds of the real heights).
+	 * Once there were more deletions than remaining items, the whole tree is rebuilt balanced,
+	 * which keeps the height O(log n) at an amortized O(1) cost per deletion.
+	 * Returns 0 (no rotations or height changes), unless the tree was rebuilt.
+	 * Complexity: O(log n) amortized
+	 * </p>
+	 */
+	private int relaxedDeleteRebalance(AVLNode node) {
+		while (node != null) {
+			updateSize(node);
+			node = (AVLNode) node.getParent();
+		}
+		this.relaxedDeletions++;
+		if (this.relaxedDeletions > this.size) {
+			rebuildBalanced();
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * public void setRebalancePolicy(RebalancePolicy policy)
+	 * <p>
+	 * Selects how the tree is rebalanced, see RebalancePolicy.
+	 * Switching back to AVL rebuilds the tree balanced, to restore the AVL invariants.
+	 * Trees joined together must use the same policy (split keeps it).
+	 * Complexity: O(1), or O(n) when switching from RELAXED to AVL.
 	 * </p>
 	 */
-	private AVLNode searchNode(int k) {
-		if (k < 0) return null;
-		return recSearchNode(k, this.root);
+	public void setRebalancePolicy(RebalancePolicy policy) {
+		if (this.rebalancePolicy == RebalancePolicy.RELAXED && policy == RebalancePolicy.AVL) {
+			rebuildBalanced();
+		}
+		this.rebalancePolicy = policy;
 	}
 
 	/**
-	 * private AVLNode recSearchNode(int k, IAVLNode node)
+	 * public RebalancePolicy getRebalancePolicy()
 	 * <p>
-	 * Recursive sub function for a binary search in a BST.
-	 * Returns the pointer to the node with key k if it exists in the BST.
-	 * otherwise, returns null.
-	 * Supports searchNode method.
-	 * Complexity: O(log n)
+	 * Returns the current rebalancing policy of the tree.
+	 * Complexity: O(1)
 	 * </p>
 	 */
-	private AVLNode recSearchNode(int k, IAVLNode node){
-		if (node == null) return null;
-		if (node.getKey() == k) return (AVLNode) node;
-		if (node.getKey() > k) return recSearchNode(k, node.getLeft());
-		else return recSearchNode(k, node.getRight());
+	public RebalancePolicy getRebalancePolicy() {
+		return this.rebalancePolicy;
 	}
 
 	/**
-	 * private AVLNode getSuccessor(AVLNode node)
+	 * private void rebuildBalanced()
 	 * <p>
-	 * Locates the successor of the node.
-	 * Returns a pointer to the successor if exists,
-	 * otherwise returns null.
-	 * Supports delete method (when deleting a binary node).
+	 * Relinks all nodes of the tree into a perfectly balanced tree with exact heights.
+	 * The nodes themselves are kept (no allocation besides the in-order node array).
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	private void rebuildBalanced() {
+		this.relaxedDeletions = 0;
+		if (this.root == null) return;
+		IAVLNode[] nodes = nodesToArray();
+		this.root = relinkBalanced(nodes, 0, nodes.length - 1);
+		this.root.setParent(null);
+	}
+
+	/**
+	 * protected AVLNode searchNode(int k)
+	 * <p>
+	 * Performs an iterative binary search in the BST,
+	 * returns the pointer to the node with node.key = k, or null if not found.
+	 * Reads each node's key once and descends through the fields directly,
+	 * so a lookup costs a single comparison branch per level and no call frames.
+	 * With a membership filter, most absent keys are rejected before the descent.
+	 * With a hash index, the node is looked up in the index instead, in O(1) expected.
 	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private AVLNode getSuccessor(AVLNode node){
-		if (!node.getRight().isRealNode()){ // Successor is not in node's right subtree.
-			AVLNode nodeSuccessor = (AVLNode) node;
-			while (node.getParent() != null){ // Finds node's first ancestor with a bigger key.
-				if (!isRightSon(nodeSuccessor)){
-					return (AVLNode) nodeSuccessor.getParent();
-				}
-				nodeSuccessor = (AVLNode) nodeSuccessor.getParent();
-			}
+	protected AVLNode searchNode(int k) {
+		if (this.hashIndexed) {
+			AVLNode node = hashIndex().get(k);
+			if (AVLTreeEvents.ENABLED) AVLTreeEvents.descent("index", 0, node != null);
+			return node;
+		}
+		if (this.membershipFilter != null && !this.membershipFilter.mightContain(k)) { // Definitely absent.
+			if (AVLTreeEvents.ENABLED) AVLTreeEvents.descent("filter", 0, false);
 			return null;
 		}
-		else { // Successor is in right subtree (find first left son).
-			AVLNode nodeSuccessor = (AVLNode) node.getRight();
-			while (nodeSuccessor.getLeft().isRealNode()) {
-				nodeSuccessor = (AVLNode) nodeSuccessor.getLeft();
+		AVLNode node = this.root;
+		int depth = 0;
+		while (node != null && node.isRealNode) {
+			depth++;
+			int nodeKey = node.key;
+			if (nodeKey == k) {
+				if (AVLTreeEvents.ENABLED) AVLTreeEvents.descent("search", depth, true);
+				return node;
 			}
-			return nodeSuccessor;
+			node = (AVLNode) (nodeKey > k ? node.left : node.right);
 		}
+		if (AVLTreeEvents.ENABLED) AVLTreeEvents.descent("search", depth, false);
+		return null;
 	}
 
 	/**
-	 * private AVLNode getPredecessor(AVLNode node)
+	 * public void setMembershipFilter(double falsePositiveRate)
 	 * <p>
-	 * Locates the predecessor of the node.
-	 * Returns a pointer to the predecessor if exists,
-	 * otherwise returns null.
-	 * Supports delete method (when updating maxNode).
-	 * Complexity: O(log n)
+	 * Puts a Bloom filter of the tree's keys in front of searchNode (search, delete, compute and the subclasses' lookups),
+	 * so a lookup of an absent key usually costs one cache line instead of a descent, while only
+	 * a falsePositiveRate share of the absent keys still descends. Costs about -1.44 * log2(falsePositiveRate) bits
+	 * per key (see membershipFilterBytes), and one filter update per insert.
+	 * Keys can't be removed from a Bloom filter, so deleted keys stay in it until it is rebuilt:
+	 * it is rebuilt once it has more stale keys than live ones, or more keys than it was sized for (twice the size).
+	 * Replaces the current filter, if any.
+	 * precondition: 0 < falsePositiveRate < 1
+	 * Complexity: O(n)
 	 * </p>
 	 */
-	private AVLNode getPredecessor(AVLNode node){
-		if (!node.getLeft().isRealNode()){ // Predecessor is not in node's left  subtree.
-			AVLNode nodePredecessor = (AVLNode) node;
-			while (node.getParent() != null){
-				if (isRightSon(nodePredecessor)){
-					return (AVLNode) nodePredecessor.getParent();
-				}
-				nodePredecessor = (AVLNode) nodePredecessor.getParent();
-			}
-			return null;
-		}
-		else { // Predecessor is in left subtree (find first right son).
-			AVLNode nodePredecessor = (AVLNode) node.getLeft();
-			while (nodePredecessor.getRight().isRealNode()) {
-				nodePredecessor = (AVLNode) nodePredecessor.getRight();
-			}
-			return nodePredecessor;
+	public void setMembershipFilter(double falsePositiveRate) {
+		BlockedBloomFilter filter = new BlockedBloomFilter(Math.max(2 * this.size, MIN_MEMBERSHIP_FILTER_CAPACITY), falsePositiveRate);
+		for (AVLNode node = this.minNode; node != null; node = getSuccessor(node)) {
+			filter.add(node.key);
 		}
+		this.membershipFilter = filter;
 	}
 
 	/**
-	 * private int getNumOfSons(AVLNode node)
+	 * public void removeMembershipFilter()
 	 * <p>
-	 * Returns the number of node's sons.
-	 * Supports delete method.
+	 * Drops the membership filter, lookups descend the tree again.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	private int getNumOfSons(AVLNode node){
-		int count = 0;
-		if (node.getLeft().isRealNode()) count++;
-		if (node.getRight().isRealNode()) count++;
-		return count;
+	public void removeMembershipFilter() {
+		this.membershipFilter = null;
 	}
 
 	/**
-	 * private void removeLeaf(AVLNode node)
+	 * public long membershipFilterBytes()
 	 * <p>
-	 * Removes a leaf node from the tree.
+	 * Returns the memory taken by the membership filter, or 0 if there is none.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	private void removeLeaf(AVLNode node){
-		if (node.getKey() == root.getKey()){ // If node == root
-			this.root = null;
-		}
-		else {
-			if (isRightSon(node)) node.getParent().setRight(VIRTUAL_NODE);
-			else node.getParent().setLeft(VIRTUAL_NODE);
-		}
-		node.setParent(null);
+	public long membershipFilterBytes() {
+		return this.membershipFilter == null ? 0 : this.membershipFilter.sizeInBytes();
 	}
 
 	/**
-	 * private void removeUnary(AVLNode node)
+	 * private void checkMembershipFilter()
 	 * <p>
-	 * Removes an unary node from the tree.
-	 * Complexity: O(1)
+	 * Rebuilds the membership filter once its stale keys (keys added but no longer in the tree, estimated by
+	 * count - size) outnumber the tree's keys, or it holds more keys than it was sized for.
+	 * Both take Omega(n) changes since the last rebuild, so the rebuilds cost O(1) amortized per change.
+	 * Complexity: O(1), or O(n) if rebuilt
 	 * </p>
 	 */
-	private void removeUnary(AVLNode node){
-		AVLNode sonOfNode = null;
-		if (node.getRight().isRealNode()) { // node is right son.
-			sonOfNode = (AVLNode) node.getRight();
-			node.setRight(VIRTUAL_NODE);
-		}
-		else { // node is left son.
-			sonOfNode = (AVLNode) node.getLeft();
-			node.setLeft(VIRTUAL_NODE);
-		}
-		sonOfNode.setParent(node.getParent());
-		if (node.parent != null) { // If not root
-			if (isRightSon(node)) {
-				node.parent.setRight(sonOfNode);
-			} else node.parent.setLeft(sonOfNode);
-		}
-		else {
-			this.root = sonOfNode;
+	private void checkMembershipFilter() {
+		BlockedBloomFilter filter = this.membershipFilter;
+		if (filter == null) return;
+		int count = filter.count();
+		if (count > filter.capacity() || count - this.size > Math.max(this.size, MIN_MEMBERSHIP_FILTER_CAPACITY)) {
+			setMembershipFilter(filter.falsePositiveRate());
 		}
-		node.setParent(null);
 	}
 
 	/**
-	 * private void removeBinaryNode(AVLNode node, AVLNode successor)
+	 * public void setHashIndex()
 	 * <p>
-	 * Removes a binary node from the tree.
+	 * Keeps a hash index from keys to nodes next to the tree, so searchNode (search, delete, compute and the
+	 * subclasses' lookups) finds a key in O(1) expected instead of O(log n), at 16 to 32 bytes per key
+	 * (see hashIndexBytes) and one index update per insert and delete. Ordered operations still use the tree.
+	 * split, join, truncateBelow/Above and deleteRange leave the index to be rebuilt by the next lookup (O(n)),
+	 * so it suits lookup-heavy trees rather than ones that are split and joined often.
+	 * Not for trees ordered by position (see IndexedAVLList), whose keys are not unique.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public void setHashIndex() {
+		this.hashIndexed = true;
+		this.hashIndex = null;
+		hashIndex();
+	}
+
+	/**
+	 * public void removeHashIndex()
+	 * <p>
+	 * Drops the hash index, lookups descend the tree again.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	private void removeBinaryNode(AVLNode node, AVLNode successor){
-		// Check successor type (unary/leaf) and remove accordingly.
-		int numOfSuccessorSons = getNumOfSons(successor);
-		if (numOfSuccessorSons == 0) removeLeaf(successor);
-		else removeUnary(successor);
+	public void removeHashIndex() {
+		this.hashIndexed = false;
+		this.hashIndex = null;
+	}
 
-		// Set successor's field to swap with node.
-		successor.setParent(node.getParent());
-		successor.setRight(node.getRight());
-		successor.setLeft(node.getLeft());
-		successor.setHeight(node.getHeight());
-		updateSize(successor);
+	/**
+	 * public long hashIndexBytes()
+	 * <p>
+	 * Returns the memory taken by the hash index, or 0 if there is none (or it is yet to be rebuilt).
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public long hashIndexBytes() {
+		return this.hashIndex == null ? 0 : this.hashIndex.sizeInBytes();
+	}
 
-		// Link successor to his new family
-		if (node.getParent() != null){ // If not root
-			if (isRightSon(node)) node.getParent().setRight(successor);
-			else node.getParent().setLeft(successor);
-		}
-		else {
-			this.root = successor;
-		}
-		if (node.getRight().isRealNode()) {
-			node.getRight().setParent(successor);
+	/**
+	 * private NodeHashIndex hashIndex()
+	 * <p>
+	 * Returns the hash index, rebuilding it from the nodes first if it is stale.
+	 * precondition: hashIndexed
+	 * Complexity: O(1), or O(n) if rebuilt
+	 * </p>
+	 */
+	private NodeHashIndex hashIndex() {
+		NodeHashIndex index = this.hashIndex;
+		if (index == null) {
+			index = new NodeHashIndex(this.size);
+			for (AVLNode node = this.minNode; node != null; node = getSuccessor(node)) {
+				index.put(node.key, node);
+			}
+			this.hashIndex = index;
 		}
-		node.getLeft().setParent(successor);
+		return index;
+	}
 
-		// Unlink node from the tree.
-		node.setParent(null);
-		node.setRight(VIRTUAL_NODE);
-		node.setLeft(VIRTUAL_NODE);
-		node.setHeight(0);
+	/**
+	 * public IAVLNode floorNode(int k)
+	 * <p>
+	 * Returns the node with the largest key <= k, or null if there is none.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public IAVLNode floorNode(int k) {
+		return highestBelow(k, true);
 	}
 
 	/**
-	 * private int deleteRebalance(AVLNode node)
+	 * public IAVLNode lowerNode(int k)
 	 * <p>
-	 * Rebalances the tree by the AVL invariants, after a deletion.
-	 * Returns a counter of the balancing operations.
+	 * Returns the node with the largest key < k, or null if there is none.
 	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private int deleteRebalance(AVLNode node) {
-		int changeCounter = 0;
-		while (node != null) { // Traversal from node to root.
-			updateSize(node);
-			// ---- Balances according to the node's balance factor -----
-			if (!checkHeight(node) && getBalanceFactor(node) == 0) break; // if true -> tree level is balanced.
-			switch (checkState(node)) {
-				case 0: {
-					promoteDemote(-1, node);
-					//updateSize(node);
-					changeCounter++;
-					break;
-				}
-				case 1: {
-					leftRotation(node);
-					promoteDemote(1, node.getParent());
-					node = (AVLNode) node.getParent();
-					changeCounter += 3;
-					break;
-				}
-				case 2: {
-					rightRotation(node);
-					promoteDemote(1, node.getParent());
-					node = (AVLNode) node.getParent();
-					changeCounter += 3;
-					break;
-				}
-				case 3: {
-					leftRotation(node);
-					promoteDemote(-1, node);
-					node = (AVLNode) node.getParent();
-					changeCounter += 3;
-					break;
-				}
-				case 4: {
-					rightRotation(node);
-					promoteDemote(-1, node);
-					node = (AVLNode) node.getParent();
-					changeCounter += 3;
-					break;
-				}
-				case 5: {
-					rightLeftRotation(node);
-					promoteDemote(-1, node);
-					node = (AVLNode) node.getParent();
-					changeCounter += 6;
-					break;
+	public IAVLNode lowerNode(int k) {
+		return highestBelow(k, false);
+	}
+
+	/**
+	 * public IAVLNode ceilingNode(int k)
+	 * <p>
+	 * Returns the node with the smallest key >= k, or null if there is none.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public IAVLNode ceilingNode(int k) {
+		return lowestAbove(k, true);
+	}
+
+	/**
+	 * public IAVLNode higherNode(int k)
+	 * <p>
+	 * Returns the node with the smallest key > k, or null if there is none.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public IAVLNode higherNode(int k) {
+		return lowestAbove(k, false);
+	}
+
+	/**
+	 * public int floorKey(int k, int missingKey)
+	 * <p>
+	 * Returns the largest key <= k, or missingKey if there is none. Allocates nothing.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int floorKey(int k, int missingKey) {
+		AVLNode node = highestBelow(k, true);
+		return node == null ? missingKey : node.key;
+	}
+
+	/**
+	 * public int lowerKey(int k, int missingKey)
+	 * <p>
+	 * Returns the largest key < k, or missingKey if there is none. Allocates nothing.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int lowerKey(int k, int missingKey) {
+		AVLNode node = highestBelow(k, false);
+		return node == null ? missingKey : node.key;
+	}
+
+	/**
+	 * public int ceilingKey(int k, int missingKey)
+	 * <p>
+	 * Returns the smallest key >= k, or missingKey if there is none. Allocates nothing.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int ceilingKey(int k, int missingKey) {
+		AVLNode node = lowestAbove(k, true);
+		return node == null ? missingKey : node.key;
+	}
+
+	/**
+	 * public int higherKey(int k, int missingKey)
+	 * <p>
+	 * Returns the smallest key > k, or missingKey if there is none. Allocates nothing.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int higherKey(int k, int missingKey) {
+		AVLNode node = lowestAbove(k, false);
+		return node == null ? missingKey : node.key;
+	}
+
+	/**
+	 * public IAVLNode successorNode(IAVLNode node)
+	 * <p>
+	 * Returns the node which follows node in key order, or null if node holds the maximum.
+	 * Complexity: O(1) amortized over an in-order walk, O(log n) worst case.
+	 * </p>
+	 */
+	public IAVLNode successorNode(IAVLNode node) {
+		return getSuccessor((AVLNode) node);
+	}
+
+	/**
+	 * public IAVLNode predecessorNode(IAVLNode node)
+	 * <p>
+	 * Returns the node which precedes node in key order, or null if node holds the minimum.
+	 * Complexity: O(1) amortized over a descending walk, O(log n) worst case.
+	 * </p>
+	 */
+	public IAVLNode predecessorNode(IAVLNode node) {
+		return getPredecessor((AVLNode) node);
+	}
+
+	/**
+	 * public NavigableMap<Integer, String> asNavigableMap()
+	 * <p>
+	 * Returns a java.util.NavigableMap view of the tree, backed by it (changes of either are seen by the other).
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public NavigableMap<Integer, String> asNavigableMap() {
+		return new NavigableAVLMap(this);
+	}
+
+	/**
+	 * private AVLNode lowestAbove(int k, boolean inclusive)
+	 * <p>
+	 * Single descent for the node with the smallest key > k (or >= k if inclusive), null if there is none.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private AVLNode lowestAbove(int k, boolean inclusive) {
+		AVLNode node = this.root;
+		AVLNode candidate = null;
+		while (node != null && node.isRealNode) {
+			int nodeKey = node.key;
+			if (nodeKey > k || (inclusive && nodeKey == k)) {
+				candidate = node;
+				if (nodeKey == k) break;
+				node = (AVLNode) node.left;
+			}
+			else {
+				node = (AVLNode) node.right;
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * private AVLNode highestBelow(int k, boolean inclusive)
+	 * <p>
+	 * Single descent for the node with the largest key < k (or <= k if inclusive), null if there is none.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private AVLNode highestBelow(int k, boolean inclusive) {
+		AVLNode node = this.root;
+		AVLNode candidate = null;
+		while (node != null && node.isRealNode) {
+			int nodeKey = node.key;
+			if (nodeKey < k || (inclusive && nodeKey == k)) {
+				candidate = node;
+				if (nodeKey == k) break;
+				node = (AVLNode) node.right;
+			}
+			else {
+				node = (AVLNode) node.left;
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * private AVLNode getSuccessor(AVLNode node)
+	 * <p>
+	 * Locates the successor of the node.
+	 * Returns a pointer to the successor if exists,
+	 * otherwise returns null.
+	 * Supports delete method (when deleting a binary node) and successorNode.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private AVLNode getSuccessor(AVLNode node){
+		if (!node.getRight().isRealNode()){ // Successor is not in node's right subtree.
+			AVLNode nodeSuccessor = (AVLNode) node;
+			while (nodeSuccessor.getParent() != null){ // Finds node's first ancestor with a bigger key.
+				if (!isRightSon(nodeSuccessor)){
+					return (AVLNode) nodeSuccessor.getParent();
 				}
-				case 6: {
-					leftRightRotation(node);
-					promoteDemote(-1, node);
-					node = (AVLNode) node.getParent();
-					changeCounter += 6;
-					break;
+				nodeSuccessor = (AVLNode) nodeSuccessor.getParent();
+			}
+			return null;
+		}
+		else { // Successor is in right subtree (find first left son).
+			AVLNode nodeSuccessor = (AVLNode) node.getRight();
+			while (nodeSuccessor.getLeft().isRealNode()) {
+				nodeSuccessor = (AVLNode) nodeSuccessor.getLeft();
+			}
+			return nodeSuccessor;
+		}
+	}
+
+	/**
+	 * private AVLNode getPredecessor(AVLNode node)
+	 * <p>
+	 * Locates the predecessor of the node.
+	 * Returns a pointer to the predecessor if exists,
+	 * otherwise returns null.
+	 * Supports delete method (when updating maxNode) and predecessorNode.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private AVLNode getPredecessor(AVLNode node){
+		if (!node.getLeft().isRealNode()){ // Predecessor is not in node's left  subtree.
+			AVLNode nodePredecessor = (AVLNode) node;
+			while (nodePredecessor.getParent() != null){ // Finds node's first ancestor with a smaller key.
+				if (isRightSon(nodePredecessor)){
+					return (AVLNode) nodePredecessor.getParent();
 				}
+				nodePredecessor = (AVLNode) nodePredecessor.getParent();
 			}
-			if (node.getParent() == null) this.root = node; // Updates root after rebalancing
-			node = (AVLNode) node.getParent();
+			return null;
 		}
-		while (node != null) { // Updates node sizes.
-			updateSize(node);
-			node = (AVLNode) node.getParent();
+		else { // Predecessor is in left subtree (find first right son).
+			AVLNode nodePredecessor = (AVLNode) node.getLeft();
+			while (nodePredecessor.getRight().isRealNode()) {
+				nodePredecessor = (AVLNode) nodePredecessor.getRight();
+			}
+			return nodePredecessor;
+		}
+	}
+
+	/**
+	 * private int getNumOfSons(AVLNode node)
+	 * <p>
+	 * Returns the number of node's sons.
+	 * Supports delete method.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private int getNumOfSons(AVLNode node){
+		int count = 0;
+		if (node.getLeft().isRealNode()) count++;
+		if (node.getRight().isRealNode()) count++;
+		return count;
+	}
+
+	/**
+	 * private void removeLeaf(AVLNode node)
+	 * <p>
+	 * Removes a leaf node from the tree.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void removeLeaf(AVLNode node){
+		if (node == this.root){
+			this.root = null;
+		}
+		else {
+			if (isRightSon(node)) node.getParent().setRight(VIRTUAL_NODE);
+			else node.getParent().setLeft(VIRTUAL_NODE);
+		}
+		node.setParent(null);
+	}
+
+	/**
+	 * private void removeUnary(AVLNode node)
+	 * <p>
+	 * Removes an unary node from the tree.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void removeUnary(AVLNode node){
+		AVLNode sonOfNode = null;
+		if (node.getRight().isRealNode()) { // node is right son.
+			sonOfNode = (AVLNode) node.getRight();
+			node.setRight(VIRTUAL_NODE);
+		}
+		else { // node is left son.
+			sonOfNode = (AVLNode) node.getLeft();
+			node.setLeft(VIRTUAL_NODE);
+		}
+		sonOfNode.setParent(node.getParent());
+		if (node.parent != null) { // If not root
+			if (isRightSon(node)) {
+				node.parent.setRight(sonOfNode);
+			} else node.parent.setLeft(sonOfNode);
+		}
+		else {
+			this.root = sonOfNode;
+		}
+		node.setParent(null);
+	}
+
+	/**
+	 * private void removeBinaryNode(AVLNode node, AVLNode successor)
+	 * <p>
+	 * Removes a binary node from the tree.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void removeBinaryNode(AVLNode node, AVLNode successor){
+		// Check successor type (unary/leaf) and remove accordingly.
+		int numOfSuccessorSons = getNumOfSons(successor);
+		if (numOfSuccessorSons == 0) removeLeaf(successor);
+		else removeUnary(successor);
+
+		// Set successor's field to swap with node.
+		successor.setParent(node.getParent());
+		successor.setRight(node.getRight());
+		successor.setLeft(node.getLeft());
+		successor.setHeight(node.getHeight());
+		updateSize(successor);
+
+		// Link successor to his new family
+		if (node.getParent() != null){ // If not root
+			if (isRightSon(node)) node.getParent().setRight(successor);
+			else node.getParent().setLeft(successor);
+		}
+		else {
+			this.root = successor;
+		}
+		if (node.getRight().isRealNode()) {
+			node.getRight().setParent(successor);
+		}
+		node.getLeft().setParent(successor);
+
+		// Unlink node from the tree.
+		node.setParent(null);
+		node.setRight(VIRTUAL_NODE);
+		node.setLeft(VIRTUAL_NODE);
+		node.setHeight(0);
+	}
+
+	/**
+	 * private int deleteRebalance(AVLNode node)
+	 * <p>
+	 * Rebalances the tree by the AVL invariants, after a deletion.
+	 * Returns a counter of the balancing operations.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int deleteRebalance(AVLNode node) {
+		int changeCounter = 0;
+		while (node != null) { // Traversal from node to root.
+			updateSize(node);
+			// ---- Balances according to the node's balance factor -----
+			if (!checkHeight(node) && getBalanceFactor(node) == 0) break; // if true -> tree level is balanced.
+			int state = checkState(node);
+			if (AVLTreeEvents.ENABLED) AVLTreeEvents.deleteRebalanceCase(state);
+			switch (state) {
+				case 0: {
+					promoteDemote(-1, node);
+					//updateSize(node);
+					changeCounter++;
+					break;
+				}
+				case 1: {
+					leftRotation(node);
+					promoteDemote(1, node.getParent());
+					node = (AVLNode) node.getParent();
+					changeCounter += 3;
+					break;
+				}
+				case 2: {
+					rightRotation(node);
+					promoteDemote(1, node.getParent());
+					node = (AVLNode) node.getParent();
+					changeCounter += 3;
+					break;
+				}
+				case 3: {
+					leftRotation(node);
+					promoteDemote(-1, node);
+					node = (AVLNode) node.getParent();
+					changeCounter += 3;
+					break;
+				}
+				case 4: {
+					rightRotation(node);
+					promoteDemote(-1, node);
+					node = (AVLNode) node.getParent();
+					changeCounter += 3;
+					break;
+				}
+				case 5: {
+					rightLeftRotation(node);
+					promoteDemote(-1, node);
+					node = (AVLNode) node.getParent();
+					changeCounter += 6;
+					break;
+				}
+				case 6: {
+					leftRightRotation(node);
+					promoteDemote(-1, node);
+					node = (AVLNode) node.getParent();
+					changeCounter += 6;
+					break;
+				}
+			}
+			if (node.getParent() == null) this.root = node; // Updates root after rebalancing
+			node = (AVLNode) node.getParent();
+		}
+		while (node != null) { // Updates node sizes.
+			updateSize(node);
+			node = (AVLNode) node.getParent();
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * private int checkState(AVLNode node)
+	 * <p>
+	 * Determines the type of balancing operations needed (rotation/promote/demote).
+	 * Returns an indicator which signals that type.
+	 * Supports deleteReblance method.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private int checkState(AVLNode node){ // Returns 7 states indicators for rebalancing.
+		int myBF = getBalanceFactor(node);
+		int rightBF = 0;
+		int leftBF = 0;
+		if (node.getRight().isRealNode()) rightBF = getBalanceFactor(node.getRight());
+		if (node.getLeft().isRealNode()) leftBF = getBalanceFactor(node.getLeft());
+		if (myBF == 0) return 0; // Case 1 demote
+		if (myBF == -2 && rightBF == 0) return 1; // Case 2 single rotation (a)
+		if (myBF == 2 && leftBF == 0) return 2; // Case 2 single rotation (a) symetry
+		if (myBF == -2 && rightBF == -1) return 3; // Case 3 single rotation (b)
+		if (myBF == 2 && leftBF == 1) return 4; // Case 3 single rotation (b) symetry
+		if (myBF == -2 && rightBF == 1) return 5; // Case 4 double rotation
+		if (myBF == 2 && leftBF == -1) return 6; // Case 4 double rotation symetry
+		return -1;
+	}
+
+	// ---------- End of deletion methods -----------
+
+	// ----------     Insert methods      -----------
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * Inserts an item with key k and info i to the AVL tree.
+	 * The tree must remain valid, i.e. keep its invariants.
+	 * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
+	 * A promotion/rotation counts as one re-balance operation, double-rotation is counted as 2.
+	 * Returns -1 if an item with key k already exists in the tree.
+	 * Calls insertNode, which calls insertRebalance iterative method.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insert(int k, String i) {
+		return insertNode(newNode(k, i));
+	}
+
+	/**
+	 * protected AVLNode newNode(int k, String i)
+	 * <p>
+	 * Creates the node for an item with key k and info i.
+	 * Used by insert and compute, subclasses override it to create their own node type.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	protected AVLNode newNode(int k, String i) {
+		if (this.nodePoolSize > 0) { // Reuse a deleted node.
+			AVLNode node = this.nodePool[--this.nodePoolSize];
+			this.nodePool[this.nodePoolSize] = null;
+			node.key = k;
+			node.value = i;
+			resetNode(node);
+			return node;
+		}
+		return new AVLNode(k, i);
+	}
+
+	/**
+	 * protected AVLNode copyNode(AVLNode node)
+	 * <p>
+	 * Returns a new, detached node with the same item(s) as node.
+	 * Used by compact, subclasses override it to copy their own node type.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	protected AVLNode copyNode(AVLNode node) {
+		return new AVLNode(node.key, node.value);
+	}
+
+	/**
+	 * public void compact()
+	 * <p>
+	 * Replaces all nodes of the tree with fresh copies allocated in key order, and links them balanced.
+	 * Consecutive allocations are laid out next to each other, so in-order traversals become
+	 * mostly sequential memory scans, and the old scattered nodes become garbage at once.
+	 * Node references held outside the tree (e.g. from getRoot) are no longer part of it afterwards.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public void compact() {
+		this.finger = null;
+		this.relaxedDeletions = 0;
+		if (this.root == null) return;
+		IAVLNode[] nodes = nodesToArray();
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = copyNode((AVLNode) nodes[i]);
+		}
+		this.hashIndex = null; // Indexes the old nodes.
+		if (this.frontCache != null) this.frontCache.clear();
+		this.root = relinkBalanced(nodes, 0, nodes.length - 1);
+		this.root.setParent(null);
+		updateMaxMin();
+	}
+
+	/**
+	 * protected int insertNode(AVLNode newNode)
+	 * <p>
+	 * Links a new, detached node into the tree by its key and rebalances the tree.
+	 * Returns the number of re-balancing operations, or -1 if the key already exists in the tree.
+	 * Shared by insert, join and the value-specialized subclasses, which supply their own node types.
+	 * A key beyond the current maximum (minimum) is linked straight under maxNode (minNode),
+	 * so appends skip the descent.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected int insertNode(AVLNode newNode) {
+		return insertNode(newNode, insertStart(newNode.key));
+	}
+
+	/**
+	 * private AVLNode insertStart(int k)
+	 * <p>
+	 * Returns the node to descend from when looking for k's position:
+	 * maxNode (minNode) if k is beyond the maximum (minimum), otherwise the root.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private AVLNode insertStart(int k) {
+		if (this.size > 0) {
+			if (k > this.maxNode.key) return this.maxNode;
+			if (k < this.minNode.key) return this.minNode;
+		}
+		return this.root;
+	}
+
+	/**
+	 * protected AVLNode findOrParent(int k)
+	 * <p>
+	 * Single descent for upserts: returns the node with key k if it exists,
+	 * otherwise the node under which k should be linked (see linkNode), or null if the tree is empty.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected AVLNode findOrParent(int k) {
+		if (this.root == null) return null;
+		return descend(k, insertStart(k), "upsert");
+	}
+
+	/**
+	 * private int insertNode(AVLNode newNode, AVLNode start)
+	 * <p>
+	 * Links newNode into the tree by a descent from start, and rebalances the tree.
+	 * start must be a node whose subtree is the right place for newNode's key (e.g. the root).
+	 * Returns the number of re-balancing operations, or -1 if the key already exists in the tree.
+	 * Complexity: O(height of start + log n)
+	 * </p>
+	 */
+	private int insertNode(AVLNode newNode, AVLNode start) {
+		AVLNode y = null; // Y represents NewNode's parent.
+		if (this.root != null) {
+			y = descend(newNode.key, start, "insert");
+			if (y.key == newNode.key) return -1; // New node's key exists in the tree
+		}
+		return linkNode(newNode, y);
+	}
+
+	/**
+	 * protected int linkNode(AVLNode newNode, AVLNode y)
+	 * <p>
+	 * Links newNode as a son of y (found by findOrParent), and rebalances the tree.
+	 * Returns the number of re-balancing operations.
+	 * precondition: y is null only if the tree is empty, and newNode's key is not in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected int linkNode(AVLNode newNode, AVLNode y) {
+		return linkNodeAt(newNode, y, y != null && y.getKey() < newNode.key);
+	}
+
+	/**
+	 * protected int linkNodeAt(AVLNode newNode, AVLNode parent, boolean asRightSon)
+	 * <p>
+	 * Links newNode as the right (or left) son of parent, and rebalances the tree.
+	 * The position alone decides where newNode goes, keys are not compared,
+	 * so this also serves trees ordered by position only (see IndexedAVLList).
+	 * Returns the number of re-balancing operations.
+	 * precondition: parent is null only if the tree is empty, and that son of parent is virtual.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected int linkNodeAt(AVLNode newNode, AVLNode parent, boolean asRightSon) {
+		int changeCounter = attachNodeAt(newNode, parent, asRightSon);
+		if (this.changeFeed != null) this.changeFeed.record(ChangeFeed.INSERT, newNode.key, newNode.key, newNode.getValue());
+		return changeCounter;
+	}
+
+	/**
+	 * private int attachNodeAt(AVLNode newNode, AVLNode parent, boolean asRightSon)
+	 * <p>
+	 * Same as linkNodeAt, without recording an INSERT in the change feed:
+	 * joinOrdered links its join node with it, and join records the whole joined range instead.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int attachNodeAt(AVLNode newNode, AVLNode parent, boolean asRightSon) {
+		if (parent == null) { // First node of the tree.
+			this.root = newNode;
+			this.maxNode = newNode;
+			this.minNode = newNode;
+		}
+		else {
+			newNode.parent = parent;
+			if (asRightSon) {
+				parent.setRight(newNode);
+				if (this.maxNode == parent) this.maxNode = newNode; // Maximum update.
+			}
+			else {
+				parent.setLeft(newNode);
+				if (this.minNode == parent) this.minNode = newNode; // Minimum update.
+			}
+		}
+		updateSize(newNode); // Initializes the new leaf's size and aggregate.
+		// Increase tree size.
+		this.size += newNode.weight();
+		this.modCount++;
+		if (this.hashIndex != null) this.hashIndex.put(newNode.key, newNode);
+
+		int changeCounter = insertRebalance(newNode);
+		if (this.membershipFilter != null) {
+			this.membershipFilter.add(newNode.key);
+			checkMembershipFilter();
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * private AVLNode descend(int k, AVLNode node, String operation)
+	 * <p>
+	 * Binary search for k in node's subtree, reported to AVLTreeEvents as a descent of operation.
+	 * Returns the node with key k, or the last real node on the search path (the parent for inserting k).
+	 * precondition: node is a real node.
+	 * Complexity: O(height of node)
+	 * </p>
+	 */
+	private AVLNode descend(int k, AVLNode node, String operation) {
+		AVLNode last = node;
+		int depth = 0;
+		while (node.isRealNode) {
+			depth++;
+			last = node;
+			int nodeKey = node.key;
+			if (nodeKey == k) break;
+			node = (AVLNode) (nodeKey < k ? node.right : node.left);
+		}
+		if (AVLTreeEvents.ENABLED) AVLTreeEvents.descent(operation, depth, last.key == k);
+		return last;
+	}
+
+	/**
+	 * private AVLNode fingerStart(int k)
+	 * <p>
+	 * Climbs from the finger towards the root, only as far as needed for the subtree to contain k's position:
+	 * while the parent's key is not on the finger's side of k, the position can't be under the current node.
+	 * Returns the node to descend from (the root if there is no finger).
+	 * Complexity: O(height of the lowest common ancestor of the finger and k's position),
+	 * which is O(1) amortized for sequential streams and O(log n) in the worst case.
+	 * </p>
+	 */
+	private AVLNode fingerStart(int k) {
+		AVLNode node = this.finger;
+		if (node == null) return this.root;
+		if (node.key < k) {
+			while (node.key != k && node.parent != null && node.parent.getKey() <= k) {
+				node = (AVLNode) node.parent;
+			}
+		}
+		else if (node.key > k) {
+			while (node.key != k && node.parent != null && node.parent.getKey() >= k) {
+				node = (AVLNode) node.parent;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * public String fingerSearch(int k)
+	 * <p>
+	 * Same as search, but starts from the node reached by the last finger operation instead of the root,
+	 * and leaves the finger on the last node it visits. Suited for clustered lookups.
+	 * Complexity: O(log d) amortized for lookups at rank distance d from the finger, O(log n) worst case.
+	 * </p>
+	 */
+	public String fingerSearch(int k) {
+		if (this.size == 0) return null;
+		AVLNode node = descend(k, fingerStart(k), "fingerSearch");
+		this.finger = node;
+		if (node.key != k) return null;
+		return node.getValue();
+	}
+
+	/**
+	 * public int fingerInsert(int k, String i)
+	 * <p>
+	 * Same as insert, but finds the insertion point from the node reached by the last finger operation,
+	 * and leaves the finger on the new node. Suited for clustered (e.g. near-sequential) inserts.
+	 * The rebalancing and size updates still walk up to the root.
+	 * Complexity: O(log d) amortized search for inserts at rank distance d from the finger, O(log n) update.
+	 * </p>
+	 */
+	public int fingerInsert(int k, String i) {
+		AVLNode newNode = newNode(k, i);
+		int result = insertNode(newNode, this.size == 0 ? null : fingerStart(k));
+		if (result != -1) this.finger = newNode;
+		return result;
+	}
+
+	/**
+	 * public int fingerPut(int k, String i)
+	 * <p>
+	 * Same as fingerInsert, but an upsert: sets the info of key k to i if k already exists (as compute does),
+	 * in the same descent which would find the parent of a new node. Leaves the finger on k's node.
+	 * Returns the number of re-balancing operations (0 if k existed).
+	 * Complexity: same as fingerInsert.
+	 * </p>
+	 */
+	public int fingerPut(int k, String i) {
+		AVLNode node = this.size == 0 ? null : descend(k, fingerStart(k), "upsert");
+		if (node != null && node.key == k) {
+			updateValue(node, i);
+			this.finger = node;
+			return 0;
+		}
+		AVLNode newNode = newNode(k, i);
+		int result = linkNode(newNode, node);
+		this.finger = newNode;
+		return result;
+	}
+
+	/**
+	 * public String compute(int k, Function<String, String> remapping)
+	 * <p>
+	 * Atomic read-modify-write of the info of key k, with a single descent.
+	 * remapping gets the current info (null if k is not in the tree) and returns the new info:
+	 * the item is created if it didn't exist, and deleted if the new info is null.
+	 * In a tree whose nodes hold several items (MultiAVLTree), remapping gets the first info of k
+	 * and the new info replaces all of k's items.
+	 * With a hash index, an existing key is found in the index instead of by the descent.
+	 * Returns the new info.
+	 * Complexity: O(log n), O(1) expected to find an existing key with a hash index
+	 * (plus O(log n) to rebalance after a delete, or to update the path with an aggregate)
+	 * </p>
+	 */
+	public String compute(int k, Function<String, String> remapping) {
+		AVLNode node = this.hashIndexed ? hashIndex().get(k) : null; // An existing key skips the descent.
+		if (node == null) node = findOrParent(k);
+		boolean exists = node != null && node.key == k;
+		String newValue = remapping.apply(exists ? node.getValue() : null);
+		if (exists) {
+			if (newValue == null) {
+				deleteNode(node);
+				recycleNode(node);
+			}
+			else {
+				updateValue(node, newValue);
+			}
+		}
+		else if (newValue != null) {
+			linkNode(newNode(k, newValue), node);
+		}
+		return newValue;
+	}
+
+	/**
+	 * protected void updateValue(AVLNode node, String value)
+	 * <p>
+	 * Replaces node's info by value (all of its items, for a node which holds several, see AVLNode.replaceValue),
+	 * and updates the tree's size, cached arrays, aggregates and change feed accordingly.
+	 * Complexity: O(1), or O(log n) if the tree has an aggregate or node's weight changed
+	 * </p>
+	 */
+	protected void updateValue(AVLNode node, String value) {
+		int delta = node.replaceValue(value);
+		if (delta != 0) {
+			weightChanged(node, delta);
+		}
+		else {
+			this.modCount++;
+			if (this.aggregate != null) { // The aggregate may depend on the info (e.g. ITEM_HASH).
+				for (AVLNode ancestor = node; ancestor != null; ancestor = (AVLNode) ancestor.parent) {
+					updateSize(ancestor);
+				}
+			}
+		}
+		if (this.changeFeed != null) this.changeFeed.record(ChangeFeed.UPDATE, node.key, node.key, value);
+	}
+
+	/**
+	 * protected void weightChanged(AVLNode node, int delta)
+	 * <p>
+	 * Updates the tree size and the sizes on node's path to the root, after node's weight changed by delta.
+	 * Used by subclasses whose nodes hold several items.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected void weightChanged(AVLNode node, int delta) {
+		this.size += delta;
+		this.modCount++;
+		while (node != null) {
+			updateSize(node);
+			node = (AVLNode) node.parent;
+		}
+	}
+
+	/**
+	 * public int rank(int k)
+	 * <p>
+	 * Returns the number of items in the tree with a key smaller than k.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int rank(int k) {
+		int rank = 0;
+		AVLNode node = this.root;
+		while (node != null && node.isRealNode) {
+			if (node.key < k) {
+				rank += ((AVLNode) node.left).size + node.weight();
+				node = (AVLNode) node.right;
+			}
+			else {
+				node = (AVLNode) node.left;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * public int select(int i)
+	 * <p>
+	 * Returns the key of the item with rank i, i.e. the (i+1)-th smallest item in the tree.
+	 * precondition: 0 <= i < size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int select(int i) {
+		return selectNode(i).key;
+	}
+
+	/**
+	 * protected AVLNode selectNode(int i)
+	 * <p>
+	 * Returns the node which holds the item with rank i.
+	 * Descends by the size fields of the left sons.
+	 * precondition: 0 <= i < size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected AVLNode selectNode(int i) {
+		if (i < 0 || i >= this.size) throw new IndexOutOfBoundsException("Rank " + i + " is out of range for size " + this.size);
+		AVLNode node = this.root;
+		while (true) {
+			int leftSize = ((AVLNode) node.left).size;
+			if (i < leftSize) {
+				node = (AVLNode) node.left;
+			}
+			else if (i < leftSize + node.weight()) {
+				return node;
+			}
+			else {
+				i -= leftSize + node.weight();
+				node = (AVLNode) node.right;
+			}
+		}
+	}
+
+	/**
+	 * private int insertRebalance(AVLNode node)
+	 * <p>
+	 * Balances the tree after insertion or join, traversing from node's parent to the root.
+	 * Returns number of balance operations done.
+	 * A rotation above a balanced son (only possible after join) promotes the new subtree root
+	 * instead of demoting the old one, and the traversal continues upwards.
+	 * Heights are treated as ranks: y is an offender only if a son reached y's height, and the
+	 * balance factor then equals the rank difference of the other son. Under the AVL policy that is
+	 * the usual (1 -> promote, 2 -> rotate), under the RELAXED policy larger differences rotate too.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int insertRebalance(AVLNode node){ // Balances the tree after insertion, returns number of operations done
+		int changeCounter = 0;
+		AVLNode y = (AVLNode) node.getParent();
+		while (y != null){ //Traversal from node to root.
+			if (y.getHeight() > Math.max(y.getLeft().getHeight(), y.getRight().getHeight())) break; // Level is balanced, therefore tree is balanced.
+			else {
+				int balanceFactor = Math.max(-2, Math.min(2, getBalanceFactor(y)));
+				// Balance tree according to the balance factor.
+				switch (balanceFactor){ // Check AVL offenders.
+					case 2:
+						if (getBalanceFactor(y.getLeft()) < 0) {
+							leftRightRotation(y);
+							changeCounter += 5;
+							if (AVLTreeEvents.ENABLED) AVLTreeEvents.insertRebalanceCase(AVLTreeEvents.INSERT_DOUBLE_ROTATION);
+						}
+						else {
+							rightRotation(y, getBalanceFactor(y.getLeft()) == 0);
+							changeCounter += 2;
+							if (AVLTreeEvents.ENABLED) AVLTreeEvents.insertRebalanceCase(AVLTreeEvents.INSERT_SINGLE_ROTATION);
+						}
+						y = (AVLNode) y.getParent(); // y went down one level therefore we need to get back to the relevant node.
+						break;
+					case -2:
+						if (getBalanceFactor(y.getRight()) > 0) {
+							rightLeftRotation(y);
+							changeCounter += 5;
+							if (AVLTreeEvents.ENABLED) AVLTreeEvents.insertRebalanceCase(AVLTreeEvents.INSERT_DOUBLE_ROTATION);
+						}
+						else {
+							leftRotation(y, getBalanceFactor(y.getRight()) == 0);
+							changeCounter += 2;
+							if (AVLTreeEvents.ENABLED) AVLTreeEvents.insertRebalanceCase(AVLTreeEvents.INSERT_SINGLE_ROTATION);
+						}
+						y = (AVLNode) y.getParent();
+						break;
+					case -1:
+					case 1:
+						promoteDemote(1, y);
+						updateSize(y);
+						changeCounter++;
+						if (AVLTreeEvents.ENABLED) AVLTreeEvents.insertRebalanceCase(AVLTreeEvents.INSERT_PROMOTE);
+						break;
+				}
+			}
+			if (y.getParent() == null) this.root = y; // Update root after rebalancing.
+			y = (AVLNode) y.getParent();
+		}
+		while (y != null){
+			updateSize(y);
+			y = (AVLNode) y.getParent();
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * private boolean checkHeight(AVLNode parent)
+	 * <p>
+	 * Checks if the parent height is updated correctly.
+	 * Returns a boolean value represents whether a change is required.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private boolean checkHeight(AVLNode parent){
+		int maxSonHeight = Math.max(parent.getLeft().getHeight(), parent.getRight().getHeight());
+		return parent.getHeight() != maxSonHeight + 1;
+	}
+
+
+	/**
+	 * private int getBalanceFactor(IAVLNode node)
+	 * <p>
+	 * Returns the balance factor of the node. (BF = node.left.height - node.right.height)
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private int getBalanceFactor(IAVLNode node){
+		if (!node.isRealNode()) return 0;
+		return node.getLeft().getHeight() - node.getRight().getHeight();
+	}
+
+	/**
+	 * private boolean isRightSon(IAVLNode son)
+	 * <p>
+	 * Checks whether the node is the right son of the node's parent.
+	 * Returns a boolean value accordingly.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private boolean isRightSon(IAVLNode son){ // Checks if the node is a right son of his parent
+		return son.getParent().getRight() == son;
+	}
+
+	/**
+	 * private void leftRotation(IAVLNode x)
+	 * <p>
+	 * Calls leftRotation(IAVLNode x, boolean joinFlag) for a regular (non-join) rotation.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void leftRotation(IAVLNode x){
+		leftRotation(x, false);
+	}
+
+	/**
+	 * private void leftRotation(IAVLNode x, boolean joinFlag)
+	 * <p>
+	 * Performs a left rotation on x as the pivot node.
+	 * x represents the pivot node.
+	 * y represents x.right.
+	 * joinFlag is set when y is balanced (only after join), then y is promoted instead of demoting x.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void leftRotation(IAVLNode x, boolean joinFlag){ // Costs 2 operations - rotate and demote.
+		IAVLNode y = x.getRight();
+		x.setRight(y.getLeft());
+
+		if (y.getLeft().isRealNode()){
+			y.getLeft().setParent(x);
+		}
+		y.setParent(x.getParent());
+
+		if (x.getParent() == null){
+			this.root = (AVLNode) y;
+		}
+		else if (x == x.getParent().getLeft()){
+			x.getParent().setLeft(y);
+		}
+		else {
+			x.getParent().setRight(y);
+		}
+		y.setLeft(x);
+		x.setParent(y);
+		if (joinFlag){ // Join requires a different balancing operation.
+			promoteDemote(1, y);
+		}
+		else {
+			promoteDemote(-1, x);
+		}
+		// Update size field
+		updateSize(x);
+		updateSize(y);
+	}
+
+	/**
+	 * private void rightRotation(IAVLNode y)
+	 * <p>
+	 * Calls rightRotation(IAVLNode y, boolean joinFlag) for a regular (non-join) rotation.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void rightRotation(IAVLNode y){
+		rightRotation(y, false);
+	}
+
+	/**
+	 * private void rightRotation(IAVLNode y, boolean joinFlag)
+	 * <p>
+	 * Performs a right rotation on x as the pivot node.
+	 * y represents the pivot node.
+	 * x represents y.left.
+	 * joinFlag is set when x is balanced (only after join), then x is promoted instead of demoting y.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void rightRotation(IAVLNode y, boolean joinFlag){ // Costs 2 operations - rotate and demote.
+		IAVLNode x = y.getLeft();
+		y.setLeft(x.getRight());
+
+		if (x.getRight().isRealNode()){
+			x.getRight().setParent(y);
+		}
+		x.setParent(y.getParent());
+
+		if (y.getParent() == null){
+			this.root = (AVLNode) x;
+		}
+		else if (y == y.getParent().getRight()){
+			y.getParent().setRight(x);
+		}
+		else {
+			y.getParent().setLeft(x);
+		}
+		x.setRight(y);
+		y.setParent(x);
+		if (joinFlag){ // Join requires a different balancing operation.
+			promoteDemote(1, x);
+		}
+		else {
+			promoteDemote(-1, y);
+		}
+		// Update size field
+		updateSize(y);
+		updateSize(x);
+	}
+
+	/**
+	 * private void leftRightRotation(IAVLNode y)
+	 * <p>
+	 * Performs a left rotation on y.left and then right rotation on y as the pivot node.
+	 * y represents the pivot node.
+	 * x represents y.left.
+	 * z represents x.right.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void leftRightRotation(IAVLNode y){ // Costs 5 operations - 2 rotate 2 demote 1 promote.
+		IAVLNode x = y.getLeft();
+		IAVLNode z = x.getRight();
+		leftRotation(x);
+		rightRotation(y);
+		promoteDemote(1, z);
+	}
+
+	/**
+	 * private void rightLeftRotation(IAVLNode x)
+	 * <p>
+	 * Performs a right rotation on x.right and then left rotation on x as the pivot node.
+	 * x represents the pivot node.
+	 * y represents x.right.
+	 * z represents y.left.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void rightLeftRotation(IAVLNode x){ // Costs 5 operations - 2 rotate 2 demote 1 promote.
+		IAVLNode y = x.getRight();
+		IAVLNode z = y.getLeft();
+		rightRotation(y);
+		leftRotation(x);
+		promoteDemote(1, z);
+	}
+
+	/**
+	 * private void promoteDemote(int k, IAVLNode node)
+	 * <p>
+	 * Changes node.height according to k.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void promoteDemote(int k, IAVLNode node){ // Costs 1 promote/demote operation.
+		node.setHeight(node.getHeight() + k);
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public String min() {
+		if (this.minNode == null) return null;
+		return this.minNode.getValue();
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public String max() {
+		if (this.maxNode == null) return null;
+		return this.maxNode.getValue();
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public int[] keysToArray() {
+		if (this.size == 0) return new int[0];
+		buildInOrderArrays();
+		return this.inOrderKeyArray.clone();
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public String[] infoToArray() {
+		if (this.size == 0) return new String[0];
+		buildInOrderArrays();
+		return this.inOrderValueArray.clone();
+	}
+
+	/**
+	 * public IntBuffer keysView()
+	 * <p>
+	 * Returns a read-only view of the sorted keys, the same content as keysToArray.
+	 * Repeated calls with no change of the tree in between share the cached array and cost O(1).
+	 * The view is a snapshot, later changes of the tree are not reflected in it.
+	 * Complexity: O(1) if the tree didn't change since the last export, otherwise O(n)
+	 * </p>
+	 */
+	public IntBuffer keysView() {
+		if (this.size == 0) return IntBuffer.allocate(0).asReadOnlyBuffer();
+		buildInOrderArrays();
+		return IntBuffer.wrap(this.inOrderKeyArray).asReadOnlyBuffer();
+	}
+
+	/**
+	 * public List<String> infoView()
+	 * <p>
+	 * Returns an unmodifiable view of the infos sorted by their keys, the same content as infoToArray.
+	 * Like keysView, a snapshot which is cached while the tree doesn't change.
+	 * Complexity: O(1) if the tree didn't change since the last export, otherwise O(n)
+	 * </p>
+	 */
+	public List<String> infoView() {
+		if (this.size == 0) return Collections.emptyList();
+		buildInOrderArrays();
+		return Collections.unmodifiableList(Arrays.asList(this.inOrderValueArray));
+	}
+
+	/**
+	 * private void buildInOrderArrays()
+	 * <p>
+	 * Builds inOrderKeyArray and inOrderValueArray fields for keysToArray and valueToArray methods,
+	 * unless they are already built and the tree didn't change since (modCount is the same).
+	 * Uses exportTo method.
+	 * Complexity: O(1) if cached, otherwise O(n)
+	 * </p>
+	 */
+	private void buildInOrderArrays(){
+		if (this.inOrderKeyArray != null && this.cachedModCount == this.modCount) return;
+		this.cachedModCount = this.modCount;
+		this.inOrderKeyArray = new int[this.size];
+		this.inOrderValueArray = new String[this.size];
+		exportTo(this.inOrderKeyArray, this.inOrderValueArray, 0);
+		if (AVLTreeEvents.ENABLED) AVLTreeEvents.export(this.size);
+	}
+
+	/**
+	 * public void exportTo(int[] keys, String[] values, int offset)
+	 * <p>
+	 * Writes the sorted keys to keys[offset .. offset + size() - 1], and their infos to the same slots of values
+	 * (either array may be null, to export only the other one).
+	 * The position of every subtree in the output is known from the size fields (a node's slot is
+	 * offset + its left subtree's size), so large trees are exported by ForkJoin tasks which fill
+	 * disjoint slices in parallel, without an intermediate node array.
+	 * The tree must not be changed while exporting.
+	 * Complexity: O(n) work, O(n / p + log n) time on p threads
+	 * </p>
+	 */
+	public void exportTo(int[] keys, String[] values, int offset) {
+		if (offset < 0 || (keys != null && keys.length - offset < this.size) || (values != null && values.length - offset < this.size)) {
+			throw new IndexOutOfBoundsException("Exporting " + this.size + " items from offset " + offset + " exceeds the arrays");
+		}
+		if (this.root == null) return;
+		if (this.size <= PARALLEL_EXPORT_THRESHOLD) {
+			fillInOrder(this.root, keys, values, offset);
+		}
+		else {
+			ForkJoinPool.commonPool().invoke(new ExportTask(this.root, keys, values, offset));
 		}
-		return changeCounter;
 	}
 
 	/**
-	 * private int checkState(AVLNode node)
+	 * private static int fillInOrder(AVLNode node, int[] keys, String[] values, int index)
 	 * <p>
-	 * Determines the type of balancing operations needed (rotation/promote/demote).
-	 * Returns an indicator which signals that type.
-	 * Supports deleteReblance method.
-	 * Complexity: O(1)
+	 * Writes node's subtree in order from index on (a node of weight w fills w slots, with the infos of its w items).
+	 * Returns the index after the subtree. Recurses on left sons only, right sons are iterated.
+	 * Complexity: O(size of node's subtree)
 	 * </p>
 	 */
-	private int checkState(AVLNode node){ // Returns 7 states indicators for rebalancing.
-		int myBF = getBalanceFactor(node);
-		int rightBF = 0;
-		int leftBF = 0;
-		if (node.getRight().isRealNode()) rightBF = getBalanceFactor(node.getRight());
-		if (node.getLeft().isRealNode()) leftBF = getBalanceFactor(node.getLeft());
-		if (myBF == 0) return 0; // Case 1 demote
-		if (myBF == -2 && rightBF == 0) return 1; // Case 2 single rotation (a)
-		if (myBF == 2 && leftBF == 0) return 2; // Case 2 single rotation (a) symetry
-		if (myBF == -2 && rightBF == -1) return 3; // Case 3 single rotation (b)
-		if (myBF == 2 && leftBF == 1) return 4; // Case 3 single rotation (b) symetry
-		if (myBF == -2 && rightBF == 1) return 5; // Case 4 double rotation
-		if (myBF == 2 && leftBF == -1) return 6; // Case 4 double rotation symetry
-		return -1;
+	private static int fillInOrder(AVLNode node, int[] keys, String[] values, int index) {
+		while (node.isRealNode) {
+			index = fillInOrder((AVLNode) node.left, keys, values, index);
+			int weight = node.weight();
+			for (int item = 0; item < weight; item++, index++) {
+				if (keys != null) keys[index] = node.key;
+				if (values != null) values[index] = node.valueAt(item);
+			}
+			node = (AVLNode) node.right;
+		}
+		return index;
 	}
 
-	// ---------- End of deletion methods -----------
-
-	// ----------     Insert methods      -----------
-
 	/**
-	 * public int insert(int k, String i)
+	 * protected IAVLNode[] nodesToArray()
 	 * <p>
-	 * Inserts an item with key k and info i to the AVL tree.
-	 * The tree must remain valid, i.e. keep its invariants.
-	 * Returns the number of re-balancing operations, or 0 if no re-balancing operations were necessary.
-	 * A promotion/rotation counts as one re-balance operation, double-rotation is counted as 2.
-	 * Returns -1 if an item with key k already exists in the tree.
-	 * Calls insertRebalance iterative method.
-	 * Complexity: O(log n)
+	 * Returns an array of the tree's nodes sorted by their keys.
+	 * Used by subclasses to export their own value types.
+	 * Complexity: O(n)
 	 * </p>
 	 */
-	public int insert(int k, String i) {
-		AVLNode newNode = new AVLNode(k, i);
-		if (this.size == 0) { // First node of the tree.
-			this.root = newNode;
-			this.maxNode = newNode;
-			this.minNode = newNode;
-		}
-		else {
-			AVLNode y = this.VIRTUAL_NODE; // Y represents NewNode's parent.
-			AVLNode x = this.root; // X represents the location for insertion of NewNode.
-			while (x.isRealNode){
-				if (x.getKey() == k) return -1; // New node's key exists in the tree
-				y = x;
-				if (x.getKey() < k){
-					x = (AVLNode) x.getRight();
-				}
-				else {
-					x = (AVLNode) x.getLeft();
-				}
-			}
-			newNode.parent = y;
-			if (y.getKey() < k) {
-				y.setRight(newNode);
-			}
-			else {
-				y.setLeft(newNode);
-			}
+	protected IAVLNode[] nodesToArray(){
+		IAVLNode[] nodeArray = new IAVLNode[this.size];
+		if (this.size == 0) return nodeArray;
+		int[] arrayIndex = new int[1];
+		recBuildInOrderArrays(this.root, nodeArray, arrayIndex);
+		if (arrayIndex[0] < nodeArray.length) { // Nodes with several items (weight > 1).
+			IAVLNode[] trimmedArray = new IAVLNode[arrayIndex[0]];
+			System.arraycopy(nodeArray, 0, trimmedArray, 0, arrayIndex[0]);
+			return trimmedArray;
 		}
-		// Increase tree size.
-		this.size += 1;
+		return nodeArray;
+	}
 
-		// Minimum update:
-		if (this.minNode.getKey() > k){
-			this.minNode = newNode;
-		}
-		// Maximum update:
-		if (this.maxNode.getKey() < k){
-			this.maxNode = newNode;
+	/**
+	 * private void recBuildInOrderArrays(IAVLNode node, IAVLNode[] nodeArray, int[] arrayIndex)
+	 * <p>
+	 * Builds in order node array recursively.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	private void recBuildInOrderArrays(IAVLNode node, IAVLNode[] nodeArray, int[] arrayIndex){
+		if (node.isRealNode()){
+			recBuildInOrderArrays(node.getLeft(), nodeArray, arrayIndex);
+			nodeArray[arrayIndex[0]] = node;
+			arrayIndex[0]++;
+			recBuildInOrderArrays(node.getRight(), nodeArray, arrayIndex);
 		}
+	}
 
-		return insertRebalance(newNode);
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int size() {
+		return this.size;
 	}
 
 	/**
-	 * private int insertRebalance(AVLNode node)
+	 * public int getRoot()
 	 * <p>
-	 * Calls insertRebalnce.
-	 * Returns number of balance operations done.
-	 * Complexity: O(log n)
+	 * Returns the root AVL node, or null if the tree is empty
+	 * Complexity: O(1)
 	 * </p>
 	 */
-	private int insertRebalance(AVLNode node){
-		return insertRebalance(node, false);
+	public IAVLNode getRoot() {
+		return this.root;
 	}
 
 	/**
-	 * private int insertRebalance(AVLNode node, boolean joinFlag)
+	 * public AVLTree[] split(int x)
 	 * <p>
-	 * Calls insertRebalnce.
-	 * Returns number of balance operations done.
+	 * splits the tree into 2 trees according to the key x.
+	 * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
+	 * <p>
+	 * precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
+	 * postcondition: none
+	 * Both trees share this tree's membership filter (if any), each rebuilds its own once the other's keys
+	 * outnumber its own (on its next insert or delete).
+	 * Complexity: O(log n)
+	 */
+	public AVLTree[] split(int x){
+		AVLTree[] parts = splitAtNode(searchNode(x));
+		parts[0].membershipFilter = parts[1].membershipFilter = this.membershipFilter; // Superset of both parts' keys.
+		parts[0].hashIndexed = parts[1].hashIndexed = this.hashIndexed; // Rebuilt by their first lookups.
+		if (this.changeFeed != null) this.changeFeed.record(ChangeFeed.DELETE_RANGE, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+		return parts;
+	}
+
+	/**
+	 * protected AVLTree[] splitAtNode(AVLNode pivot)
+	 * <p>
+	 * Splits the tree into [nodes before pivot, nodes after pivot] (pivot itself is in neither).
+	 * Joins by position (joinOrdered), so keys are not compared.
+	 * The tree itself must not be used afterwards.
 	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private int insertRebalance (AVLNode node, boolean joinFlag){ // Balances the tree after insertion, returns number of operations done
-		int changeCounter = 0;
-		AVLNode y = (AVLNode) node.getParent();
-		while (y != null){ //Traversal from node to root.
-			if (!checkHeight(y)) break; // Level is balanced, therefore tree is balanced.
+	protected AVLTree[] splitAtNode(AVLNode pivot){
+		AVLTree[] splittedTree = new AVLTree[2];
+		this.finger = null;
+		this.modCount++; // The tree's nodes are handed over to the two new trees.
+		AVLNode parent = (AVLNode) pivot.getParent();
+		boolean pivotIsRightSon = parent != null && isRightSon(pivot);
+		splittedTree[0] = buildTree((AVLNode) pivot.getLeft());
+		splittedTree[1] = buildTree((AVLNode) pivot.getRight());
+
+		while (parent != null){ // Traverse x -> root and join sub trees as needed.
+			AVLNode grandParent = (AVLNode) parent.getParent();
+			boolean parentIsRightSon = grandParent != null && isRightSon(parent);
+			AVLNode leftSubtree = (AVLNode) parent.getLeft();
+			AVLNode rightSubtree = (AVLNode) parent.getRight();
+			resetNode(parent); // The ancestor itself is reused as the join node.
+			if (pivotIsRightSon){
+				splittedTree[0].joinOrdered(parent, buildTree(leftSubtree), false);
+			}
 			else {
-				int balanceFactor = getBalanceFactor(y);
-				// Balance tree according to the balance factor.
-				switch (balanceFactor){ // Check AVL offenders.
-					case 2:
-						if (getBalanceFactor(y.getLeft()) == -1) {
-							leftRightRotation(y);
-							changeCounter += 5;
-						}
-						else {
-							rightRotation(y, joinFlag);
-							changeCounter += 2;
-						}
-						y = (AVLNode) y.getParent(); // y went down one level therefore we need to get back to the relevant node.
-						break;
-					case -2:
-						if (getBalanceFactor(y.getRight()) == 1) {
-							rightLeftRotation(y);
-							changeCounter += 5;
-						}
-						else {
-							leftRotation(y, joinFlag);
-							changeCounter += 2;
-						}
-						y = (AVLNode) y.getParent();
-						break;
-					case -1:
-					case 1:
-						promoteDemote(1, y);
-						updateSize(y);
-						changeCounter++;
-						break;
-				}
+				splittedTree[1].joinOrdered(parent, buildTree(rightSubtree), true);
 			}
-			if (y.getParent() == null) this.root = y; // Update root after rebalancing.
-			y = (AVLNode) y.getParent();
-		}
-		while (y != null){
-			updateSize(y);
-			y = (AVLNode) y.getParent();
+			pivotIsRightSon = parentIsRightSon;
+			parent = grandParent;
 		}
-		return changeCounter;
+
+		return splittedTree;
 	}
 
 	/**
-	 * private boolean checkHeight(AVLNode parent)
+	 * public AVLTree truncateBelow(int k)
 	 * <p>
-	 * Checks if the parent height is updated correctly.
-	 * Returns a boolean value represents whether a change is required.
-	 * Complexity: O(1)
+	 * Deletes all items with a key smaller than k, and returns them as a new tree (of the same type).
+	 * The deleted items are detached as whole subtrees, never visited one by one.
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private boolean checkHeight(AVLNode parent){
-		int maxSonHeight = Math.max(parent.getLeft().getHeight(), parent.getRight().getHeight());
-		return parent.getHeight() != maxSonHeight + 1;
+	public AVLTree truncateBelow(int k) {
+		AVLTree[] parts = splitBefore(k);
+		adopt(parts[1]);
+		if (this.changeFeed != null && !parts[0].empty()) this.changeFeed.record(ChangeFeed.DELETE_RANGE, Integer.MIN_VALUE, k - 1, null);
+		return parts[0];
 	}
 
-
 	/**
-	 * private int getBalanceFactor(IAVLNode node)
+	 * public AVLTree truncateAbove(int k)
 	 * <p>
-	 * Returns the balance factor of the node. (BF = node.left.height - node.right.height)
-	 * Complexity: O(1)
+	 * Deletes all items with a key larger than k, and returns them as a new tree (of the same type).
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private int getBalanceFactor(IAVLNode node){
-		if (!node.isRealNode()) return 0;
-		return node.getLeft().getHeight() - node.getRight().getHeight();
+	public AVLTree truncateAbove(int k) {
+		if (k == Integer.MAX_VALUE) return buildTree(VIRTUAL_NODE); // No larger keys.
+		AVLTree[] parts = splitBefore(k + 1);
+		adopt(parts[0]);
+		if (this.changeFeed != null && !parts[1].empty()) this.changeFeed.record(ChangeFeed.DELETE_RANGE, k + 1, Integer.MAX_VALUE, null);
+		return parts[1];
 	}
 
 	/**
-	 * private boolean isRightSon(IAVLNode son)
+	 * public AVLTree deleteRange(int lo, int hi)
 	 * <p>
-	 * Checks whether the node is the right son of the node's parent.
-	 * Returns a boolean value accordingly.
-	 * Complexity: O(1)
+	 * Deletes all items with lo <= key <= hi, and returns them as a new tree (of the same type).
+	 * Splits the range out and joins the two remaining parts, which costs O(log n) regardless of the
+	 * number of deleted items (instead of a delete and a rebalancing per key).
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private boolean isRightSon(IAVLNode son){ // Checks if the node is a right son of his parent
-		return son.getParent().getRight() == son;
+	public AVLTree deleteRange(int lo, int hi) {
+		if (lo > hi) return buildTree(VIRTUAL_NODE);
+		AVLTree[] outer = splitBefore(lo); // [keys < lo, keys >= lo]
+		AVLTree[] inner = hi == Integer.MAX_VALUE
+				? new AVLTree[] {outer[1], buildTree(VIRTUAL_NODE)}
+				: outer[1].splitBefore(hi + 1); // [lo <= keys <= hi, keys > hi]
+		adopt(concatenate(outer[0], inner[1]));
+		if (this.changeFeed != null && !inner[0].empty()) this.changeFeed.record(ChangeFeed.DELETE_RANGE, lo, hi, null);
+		return inner[0];
 	}
 
 	/**
-	 * private void leftRotation(IAVLNode x)
+	 * private AVLTree[] splitBefore(int k)
 	 * <p>
-	 * Calls leftRotation(IAVLNode x, boolean joinFlag) with the relevant flag.
-	 * joinFlag is used to determine the rotation process.
-	 * Complexity: O(1)
+	 * Splits the tree into [keys < k, keys >= k] by any key k (not necessarily in the tree):
+	 * splits at the smallest key >= k and links that pivot node back into the larger part.
+	 * The tree itself must not be used afterwards (see adopt).
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private void leftRotation(IAVLNode x){
-		leftRotation(x, false);
+	private AVLTree[] splitBefore(int k) {
+		AVLNode pivot = lowestAbove(k, true);
+		AVLTree empty = buildTree(VIRTUAL_NODE);
+		if (pivot == null) return new AVLTree[] {this.root == null ? empty : buildTree(this.root), empty};
+		return splitBeforeNode(pivot);
 	}
 
 	/**
-	 * private void leftRotation(IAVLNode x, boolean joinFlag)
+	 * protected AVLTree[] splitBeforeNode(AVLNode pivot)
 	 * <p>
-	 * Performs a left rotation on x as the pivot node.
-	 * x represents the pivot node.
-	 * y represents x.right.
-	 * Complexity: O(1)
+	 * Splits the tree into [nodes before pivot, pivot and the nodes after it]:
+	 * pivot itself is reused as the first node of the second part, not copied.
+	 * Links by position (linkNodeAt), so keys are not compared.
+	 * The tree itself must not be used afterwards.
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private void leftRotation(IAVLNode x, boolean joinFlag){ // Costs 2 operations - rotate and demote.
-		IAVLNode y = x.getRight();
-		x.setRight(y.getLeft());
-
-		if (y.getLeft().isRealNode()){
-			y.getLeft().setParent(x);
-		}
-		y.setParent(x.getParent());
-
-		if (x.getParent() == null){
-			this.root = (AVLNode) y;
-		}
-		else if (x == x.getParent().getLeft()){
-			x.getParent().setLeft(y);
-		}
-		else {
-			x.getParent().setRight(y);
-		}
-		y.setLeft(x);
-		x.setParent(y);
-		if (joinFlag){ // Join requires a different balancing operation.
-			promoteDemote(1, y);
-		}
-		else {
-			promoteDemote(-1, x);
-		}
-		// Update size field
-		updateSize(x);
-		updateSize(y);
+	protected AVLTree[] splitBeforeNode(AVLNode pivot) {
+		AVLTree[] parts = splitAtNode(pivot);
+		resetNode(pivot);
+		parts[1].linkNodeAt(pivot, parts[1].minNode, false);
+		return parts;
 	}
 
 	/**
-	 * private void rightRotation(IAVLNode y)
+	 * private static AVLTree concatenate(AVLTree smaller, AVLTree bigger)
 	 * <p>
-	 * Calls rightRotation(IAVLNode y, boolean joinFlag) with the relevant flag.
-	 * joinFlag is used to determine the rotation process.
-	 * Complexity: O(1)
+	 * Returns a tree with the items of both trees, using the minimum of bigger as the join node.
+	 * precondition: keys(smaller) < keys(bigger)
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private void rightRotation(IAVLNode y){
-		rightRotation(y, false);
+	private static AVLTree concatenate(AVLTree smaller, AVLTree bigger) {
+		if (bigger.root == null) return smaller;
+		if (smaller.root == null) return bigger;
+		AVLNode joinNode = bigger.minNode;
+		bigger.deleteNode(joinNode);
+		smaller.resetNode(joinNode);
+		smaller.join(joinNode, bigger);
+		return smaller;
 	}
 
 	/**
-	 * private void rightRotation(IAVLNode y, boolean joinFlag)
+	 * private void adopt(AVLTree other)
 	 * <p>
-	 * Performs a right rotation on x as the pivot node.
-	 * y represents the pivot node.
-	 * x represents y.left.
-	 * Complexity: O(1)
+	 * Makes this tree hold other's nodes (after this tree's nodes were handed over by a split).
+	 * other must not be used afterwards. This tree's membership filter is kept, since it covers other's keys.
+	 * Complexity: O(1), or O(n) if the membership filter is rebuilt
 	 * </p>
 	 */
-	private void rightRotation(IAVLNode y, boolean joinFlag){ // Costs 2 operations - rotate and demote.
-		IAVLNode x = y.getLeft();
-		y.setLeft(x.getRight());
-
-		if (x.getRight().isRealNode()){
-			x.getRight().setParent(y);
-		}
-		x.setParent(y.getParent());
+	private void adopt(AVLTree other) {
+		this.root = other.root;
+		this.minNode = other.minNode;
+		this.maxNode = other.maxNode;
+		this.size = other.size;
+		this.relaxedDeletions = 0;
+		this.finger = null;
+		this.modCount++;
+		this.hashIndex = null;
+		if (this.frontCache != null) this.frontCache.clear(); // May hold detached nodes.
+		checkMembershipFilter(); // The filter still has the detached keys.
+	}
 
-		if (y.getParent() == null){
-			this.root = (AVLNode) x;
-		}
-		else if (y == y.getParent().getRight()){
-			y.getParent().setRight(x);
-		}
-		else {
-			y.getParent().setLeft(x);
-		}
-		x.setRight(y);
-		y.setParent(x);
-		if (joinFlag){ // Join requires a different balancing operation.
-			promoteDemote(1, x);
+	/**
+	 * private AVLTree buildTree(AVLNode root)
+	 * <p>
+	 * Build a new tree (of the same type as this tree) from a node which represents the root.
+	 * Used for the split function.
+	 * Complexity: O(log n)
+	 * <p>
+	 */
+	private AVLTree buildTree(AVLNode root){
+		AVLTree tree = newTree();
+		tree.aggregate = this.aggregate;
+		tree.rebalancePolicy = this.rebalancePolicy;
+		root.setParent(null);
+		tree.root = root;
+		tree.size = root.size;
+		if (root.isRealNode()) {
+			AVLNode minCandidate = root;
+			AVLNode maxCandidate = root;
+			while (minCandidate.getLeft().isRealNode()) { // Update minNode in new tree.
+				minCandidate = (AVLNode) minCandidate.getLeft();
+			}
+			tree.minNode = minCandidate;
+			while (maxCandidate.getRight().isRealNode()) { // Update maxNode in new tree.
+				maxCandidate = (AVLNode) maxCandidate.getRight();
+			}
+			tree.maxNode = maxCandidate;
 		}
 		else {
-			promoteDemote(-1, y);
+			tree.root = null;
+			tree.maxNode = tree.minNode = null;
 		}
-		// Update size field
-		updateSize(y);
-		updateSize(x);
+
+		return tree;
 	}
 
 	/**
-	 * private void leftRightRotation(IAVLNode y)
+	 * protected AVLTree newTree()
 	 * <p>
-	 * Performs a left rotation on y.left and then right rotation on y as the pivot node.
-	 * y represents the pivot node.
-	 * x represents y.left.
-	 * z represents x.right.
+	 * Returns a new empty tree of the same type as this tree.
+	 * split builds its result trees with it, subclasses override it to keep their type.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	private void leftRightRotation(IAVLNode y){ // Costs 5 operations - 2 rotate 2 demote 1 promote.
-		IAVLNode x = y.getLeft();
-		IAVLNode z = x.getRight();
-		leftRotation(x);
-		rightRotation(y);
-		promoteDemote(1, z);
+	protected AVLTree newTree(){
+		return new AVLTree();
 	}
 
 	/**
-	 * private void rightLeftRotation(IAVLNode x)
+	 * private void resetNode(AVLNode node)
 	 * <p>
-	 * Performs a right rotation on x.right and then left rotation on x as the pivot node.
-	 * x represents the pivot node.
-	 * y represents x.right.
-	 * z represents y.left.
+	 * Detaches node from its family and resets it to a single node tree, so it can be linked again.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	private void rightLeftRotation(IAVLNode x){ // Costs 5 operations - 2 rotate 2 demote 1 promote.
-		IAVLNode y = x.getRight();
-		IAVLNode z = y.getLeft();
-		rightRotation(y);
-		leftRotation(x);
-		promoteDemote(1, z);
+	private void resetNode(AVLNode node){
+		node.setParent(null);
+		node.setLeft(VIRTUAL_NODE);
+		node.setRight(VIRTUAL_NODE);
+		node.setHeight(0);
+		updateSize(node);
 	}
 
+
 	/**
-	 * private void promoteDemote(int k, IAVLNode node)
+	 * private void updateSize(IAVLNode node)
 	 * <p>
-	 * Changes node.height according to k.
+	 * Updates the node's size based on his son's size and its own weight.
+	 * Also updates the node's aggregate, if an aggregate is set.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	private void promoteDemote(int k, IAVLNode node){ // Costs 1 promote/demote operation.
-		node.setHeight(node.getHeight() + k);
+	private void updateSize(IAVLNode node){
+		((AVLNode)node).size = ((AVLNode)node.getLeft()).size + ((AVLNode)node.getRight()).size + ((AVLNode)node).weight();
+		if (this.aggregate != null) {
+			((AVLNode)node).aggregateValue = this.aggregate.combine(
+					this.aggregate.combine(aggregateOf(node.getLeft()), this.aggregate.lift(node)),
+					aggregateOf(node.getRight()));
+		}
 	}
 
 	/**
-	 * public String min()
+	 * private long aggregateOf(IAVLNode node)
 	 * <p>
-	 * Returns the info of the item with the smallest key in the tree,
-	 * or null if the tree is empty.
+	 * Returns the aggregate of node's subtree, or the identity for a virtual node.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	public String min() {
-		if (this.minNode == null) return null;
-		return this.minNode.getValue();
+	private long aggregateOf(IAVLNode node){
+		if (!node.isRealNode()) return this.aggregate.identity();
+		return ((AVLNode) node).aggregateValue;
 	}
 
 	/**
-	 * public String max()
+	 * protected long subtreeAggregate(IAVLNode node)
 	 * <p>
-	 * Returns the info of the item with the largest key in the tree,
-	 * or null if the tree is empty.
+	 * Returns the aggregate stored for node's subtree (the identity for a virtual node).
+	 * Used by subclasses which prune their traversals with the aggregate.
+	 * precondition: an aggregate was set with setAggregate.
 	 * Complexity: O(1)
 	 * </p>
 	 */
-	public String max() {
-		if (this.maxNode == null) return null;
-		return this.maxNode.getValue();
+	protected long subtreeAggregate(IAVLNode node){
+		return aggregateOf(node);
 	}
 
 	/**
-	 * public int[] keysToArray()
+	 * public void setAggregate(Aggregate aggregate)
 	 * <p>
-	 * Returns a sorted array which contains all keys in the tree,
-	 * or an empty array if the tree is empty.
+	 * Sets the subtree aggregate maintained by the tree (null removes it), and computes it for all nodes.
+	 * The aggregate is kept up to date by every insert, delete, rotation, split and join.
+	 * Trees joined together must use the same aggregate.
 	 * Complexity: O(n)
 	 * </p>
 	 */
-	public int[] keysToArray() {
-		if (this.size == 0) return new int[0];
-		buildInOrderArrays();
-		return this.inOrderKeyArray;
+	public void setAggregate(Aggregate aggregate){
+		this.aggregate = aggregate;
+		if (this.root != null) recUpdateSizes(this.root);
 	}
 
 	/**
-	 * public String[] infoToArray()
+	 * private void recUpdateSizes(IAVLNode node)
 	 * <p>
-	 * Returns an array which contains all info in the tree,
-	 * sorted by their respective keys,
-	 * or an empty array if the tree is empty.
+	 * Recomputes size and aggregate of every node in node's subtree, bottom-up.
 	 * Complexity: O(n)
 	 * </p>
 	 */
-	public String[] infoToArray() {
-		if (this.size == 0) return new String[0];
-		buildInOrderArrays();
-		return this.inOrderValueArray;
+	private void recUpdateSizes(IAVLNode node){
+		if (!node.isRealNode()) return;
+		recUpdateSizes(node.getLeft());
+		recUpdateSizes(node.getRight());
+		updateSize(node);
 	}
 
 	/**
-	 * private void buildInOrderArrays()
+	 * public long aggregate(int lo, int hi)
 	 * <p>
-	 * Builds inOrderKeyArray and inOrderValueArray fields for keysToArray and valueToArray methods.
-	 * Uses recBuildInOrderArrays method.
-	 * Complexity: O(n)
+	 * Returns the aggregate of all items with lo <= key <= hi, in key order.
+	 * Returns the identity if there are no such items.
+	 * Descends to the first node inside the range, then walks its left and right boundary paths,
+	 * taking whole subtrees from the aggregates stored in the nodes.
+	 * precondition: an aggregate was set with setAggregate.
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	private void buildInOrderArrays(){
-		this.inOrderKeyArray = new int[this.size];
-		this.inOrderValueArray = new String[this.size];
-		IAVLNode[] nodeArray = new IAVLNode[this.size];
-		int[] arrayIndex = new int[1];
-		recBuildInOrderArrays(this.root, nodeArray, arrayIndex);
-		insertInOrderArrays(nodeArray);
+	public long aggregate(int lo, int hi){
+		if (this.aggregate == null) throw new IllegalStateException("No aggregate is set, call setAggregate first");
+		Aggregate agg = this.aggregate;
+		AVLNode splitNode = this.root;
+		while (splitNode != null && splitNode.isRealNode && (splitNode.key < lo || splitNode.key > hi)) { // Find the range's top node.
+			splitNode = (AVLNode) (splitNode.key < lo ? splitNode.right : splitNode.left);
+		}
+		if (splitNode == null || !splitNode.isRealNode) return agg.identity();
+
+		long leftPart = agg.identity();
+		AVLNode node = (AVLNode) splitNode.left;
+		while (node.isRealNode) { // Keys >= lo, taken from right to left.
+			if (node.key >= lo) {
+				leftPart = agg.combine(agg.combine(agg.lift(node), aggregateOf(node.right)), leftPart);
+				node = (AVLNode) node.left;
+			}
+			else {
+				node = (AVLNode) node.right;
+			}
+		}
+		long rightPart = agg.identity();
+		node = (AVLNode) splitNode.right;
+		while (node.isRealNode) { // Keys <= hi, taken from left to right.
+			if (node.key <= hi) {
+				rightPart = agg.combine(rightPart, agg.combine(aggregateOf(node.left), agg.lift(node)));
+				node = (AVLNode) node.right;
+			}
+			else {
+				node = (AVLNode) node.left;
+			}
+		}
+		return agg.combine(agg.combine(leftPart, agg.lift(splitNode)), rightPart);
 	}
 
 	/**
-	 * private void recBuildInOrderArrays(IAVLNode node, IAVLNode[] nodeArray, int[] arrayIndex)
+	 * public int[] diff(AVLTree other)
 	 * <p>
-	 * Builds in order node array recursively.
-	 * Complexity: O(n)
+	 * Returns the sorted keys whose items differ between this tree and other: keys in only one of the trees,
+	 * or with different infos. Both trees must maintain the ITEM_HASH aggregate, whose range hashes
+	 * don't depend on the trees' shapes, so trees with the same items hash the same, however they were built.
+	 * Bisects the key range by the median key of one of the trees, and skips every range whose hashes are equal.
+	 * Replicas can run the same bisection remotely, by exchanging aggregate(lo, hi) of the ranges
+	 * instead of their items. ITEM_HASH is not cryptographic, equal hashes of different items are possible
+	 * (with probability about 2^-64 per compared range).
+	 * precondition: both trees' aggregate is ITEM_HASH.
+	 * Complexity: O(d log^2 n) for d differing keys
 	 * </p>
 	 */
-	private void recBuildInOrderArrays(IAVLNode node, IAVLNode[] nodeArray, int[] arrayIndex){
-		if (node.isRealNode()){
-			recBuildInOrderArrays(node.getLeft(), nodeArray, arrayIndex);
-			nodeArray[arrayIndex[0]] = node;
-			arrayIndex[0]++;
-			recBuildInOrderArrays(node.getRight(), nodeArray, arrayIndex);
+	public int[] diff(AVLTree other) {
+		if (this.aggregate != ITEM_HASH || other.aggregate != ITEM_HASH) {
+			throw new IllegalStateException("Both trees must maintain the ITEM_HASH aggregate, call setAggregate(AVLTree.ITEM_HASH) first");
 		}
+		KeyList keys = new KeyList();
+		diffRange(other, Integer.MIN_VALUE, Integer.MAX_VALUE, keys);
+		return Arrays.copyOf(keys.keys, keys.size);
 	}
 
 	/**
-	 * private void insertInOrderArrays(IAVLNode[] arrayNode)
+	 * private void diffRange(AVLTree other, int lo, int hi, KeyList keys)
 	 * <p>
-	 * Inserts arrayNode keys and values to the relevant tree fields.
-	 * Complexity: O(n)
+	 * Adds the differing keys in [lo, hi] to keys, in ascending order.
+	 * Once neither tree has two nodes in the range, the (at most two) keys are compared directly.
+	 * Otherwise the range is split after the median node of a tree with two nodes there or more
+	 * (never after its last one, so both halves have fewer of its nodes).
+	 * Complexity: O((1 + d) log^2 n) for d differing keys in the range
 	 * </p>
 	 */
-	private void insertInOrderArrays(IAVLNode[] arrayNode){
-		for (int i = 0; i < arrayNode.length; i++) {
-			this.inOrderKeyArray[i] = arrayNode[i].getKey();
-			this.inOrderValueArray[i] = arrayNode[i].getValue();
+	private void diffRange(AVLTree other, int lo, int hi, KeyList keys) {
+		if (aggregate(lo, hi) == other.aggregate(lo, hi)) return; // Same items.
+		AVLNode first = lowestAbove(lo, true);
+		AVLNode last = highestBelow(hi, true);
+		AVLNode otherFirst = other.lowestAbove(lo, true);
+		AVLNode otherLast = other.highestBelow(hi, true);
+		boolean severalNodes = first != null && last != null && first.key < last.key;
+		boolean otherSeveralNodes = otherFirst != null && otherLast != null && otherFirst.key < otherLast.key;
+		if (!severalNodes && !otherSeveralNodes) {
+			int key = first != null && first.key <= hi ? first.key : hi;
+			int otherKey = otherFirst != null && otherFirst.key <= hi ? otherFirst.key : hi;
+			boolean present = first != null && first.key <= hi;
+			boolean otherPresent = otherFirst != null && otherFirst.key <= hi;
+			if (present && otherPresent && key != otherKey) { // Two different keys, each in one tree.
+				keys.add(Math.min(key, otherKey));
+				keys.add(Math.max(key, otherKey));
+			}
+			else {
+				keys.add(present ? key : otherKey);
+			}
+			return;
 		}
+		AVLTree splitter = severalNodes && (!otherSeveralNodes || rangeSize(lo, hi) >= other.rangeSize(lo, hi)) ? this : other;
+		AVLNode median = splitter.selectNode(splitter.rank(lo) + splitter.rangeSize(lo, hi) / 2);
+		if (median.key >= splitter.highestBelow(hi, true).key) median = splitter.getPredecessor(median);
+		diffRange(other, lo, median.key, keys);
+		diffRange(other, median.key + 1, hi, keys);
 	}
 
 	/**
-	 * public int size()
+	 * private int rangeSize(int lo, int hi)
 	 * <p>
-	 * Returns the number of nodes in the tree.
-	 * Complexity: O(1)
+	 * Returns the number of items with lo <= key <= hi.
+	 * Complexity: O(log n)
 	 * </p>
 	 */
-	public int size() {
-		return this.size;
+	private int rangeSize(int lo, int hi) {
+		return (hi == Integer.MAX_VALUE ? this.size : rank(hi + 1)) - rank(lo);
 	}
 
 	/**
-	 * public int getRoot()
+	 * private static class KeyList
 	 * <p>
-	 * Returns the root AVL node, or null if the tree is empty
-	 * Complexity: O(1)
+	 * A growable array of keys, collects the result of diff.
 	 * </p>
 	 */
-	public IAVLNode getRoot() {
-		return this.root;
+	private static class KeyList {
+		private int[] keys = new int[16];
+		private int size;
+
+		private void add(int key) {
+			if (this.size == this.keys.length) this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+			this.keys[this.size++] = key;
+		}
 	}
 
 	/**
-	 * public AVLTree[] split(int x)
+	 * public int join(IAVLNode x, AVLTree t)
 	 * <p>
-	 * splits the tree into 2 trees according to the key x.
-	 * Returns an array [t1, t2] with two AVL trees. keys(t1) < x < keys(t2).
+	 * joins t and x with the tree.
+	 * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
 	 * <p>
-	 * precondition: search(x) != null (i.e. you can also assume that the tree is not empty)
+	 * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
 	 * postcondition: none
+	 * Membership filters of the same geometry are united (O(filter size)), otherwise the filter is rebuilt (O(n)).
+	 * A hash index of either tree is rebuilt for the joined tree by its next lookup.
 	 * Complexity: O(log n)
 	 */
-	public AVLTree[] split(int x){
-		AVLTree[] splittedTree = new AVLTree[2];
-		AVLNode pivot = searchNode(x);
-		splittedTree[0] = buildTree((AVLNode) pivot.getLeft());
-		splittedTree[1] = buildTree((AVLNode) pivot.getRight());
-
-		while (pivot.getParent() != null){ // Traverse x -> root and join sub trees as needed.
-			AVLNode joinNode = new AVLNode(pivot.getParent().getKey(), pivot.getParent().getValue());
-			if (isRightSon(pivot)){
-				splittedTree[0].join(joinNode, buildTree((AVLNode) pivot.getParent().getLeft()));
-			}
-			else {
-				splittedTree[1].join(joinNode, buildTree((AVLNode) pivot.getParent().getRight()));
-			}
-			pivot = (AVLNode) pivot.getParent();
-		}
-
-		return splittedTree;
+	public int join(IAVLNode x, AVLTree t) {
+		boolean tIsAfter = t.root != null ? t.root.key > x.getKey() : this.root != null && this.root.key < x.getKey();
+		BlockedBloomFilter otherFilter = t.membershipFilter;
+		boolean otherHashIndexed = t.hashIndexed;
+		int complexity = joinOrdered((AVLNode) x, t, tIsAfter);
+		if (this.membershipFilter != null || otherFilter != null) joinMembershipFilters(otherFilter, x.getKey());
+		if (this.hashIndexed || otherHashIndexed) { // Rebuilt by the next lookup.
+			this.hashIndexed = true;
+			this.hashIndex = null;
+		}
+		if (this.changeFeed != null) { // t's items and x, as one range.
+			if (tIsAfter) this.changeFeed.record(ChangeFeed.INSERT_RANGE, x.getKey(), this.maxNode.key, null);
+			else this.changeFeed.record(ChangeFeed.INSERT_RANGE, this.minNode.key, x.getKey(), null);
+		}
+		return complexity;
 	}
 
 	/**
-	 * static private AVLTree buildTree(AVLNode root)
-	 * <p>
-	 * Build a new tree from a node which represents the root.
-	 * Used for the split function.
-	 * Complexity: O(log n)
+	 * private void joinMembershipFilters(BlockedBloomFilter otherFilter, int x)
 	 * <p>
+	 * Updates the membership filter after a join with a tree whose filter was otherFilter, via x:
+	 * unites the two filters if they have the same geometry, otherwise rebuilds this tree's filter from its keys.
+	 * Complexity: O(size of the filters), or O(n) if rebuilt
+	 * </p>
 	 */
-	static private AVLTree buildTree(AVLNode root){
-		AVLTree tree = new AVLTree();
-		root.setParent(null);
-		tree.root = root;
-		tree.size = root.size;
-		if (root.isRealNode()) {
-			AVLNode minCandidate = root;
-			AVLNode maxCandidate = root;
-			while (minCandidate.getLeft().isRealNode()) { // Update minNode in new tree.
-				minCandidate = (AVLNode) minCandidate.getLeft();
-			}
-			tree.minNode = minCandidate;
-			while (maxCandidate.getRight().isRealNode()) { // Update maxNode in new tree.
-				maxCandidate = (AVLNode) maxCandidate.getRight();
-			}
-			tree.maxNode = maxCandidate;
+	private void joinMembershipFilters(BlockedBloomFilter otherFilter, int x) {
+		BlockedBloomFilter filter = this.membershipFilter;
+		if (filter == null) { // Only the joined tree had a filter.
+			setMembershipFilter(otherFilter.falsePositiveRate());
+		}
+		else if (otherFilter == null || !filter.canUnion(otherFilter)) {
+			setMembershipFilter(filter.falsePositiveRate());
 		}
 		else {
-			tree.root = null;
-			tree.maxNode = tree.minNode = null;
+			if (otherFilter != filter) { // Don't change a filter shared with another tree, unite into a copy.
+				this.membershipFilter = new BlockedBloomFilter(filter.capacity(), filter.falsePositiveRate());
+				this.membershipFilter.union(filter);
+				this.membershipFilter.union(otherFilter);
+			}
+			this.membershipFilter.add(x);
+			checkMembershipFilter();
 		}
-
-		return tree;
-	}
-
-
-	/**
-	 * private void updateSize(IAVLNode node)
-	 * <p>
-	 * Updates the node's size based on his son's size.
-	 * Complexity: O(1)
-	 * </p>
-	 */
-	private void updateSize(IAVLNode node){
-		((AVLNode)node).size = ((AVLNode)node.getLeft()).size + ((AVLNode)node.getRight()).size + 1;
 	}
 
 	/**
-	 * public int join(IAVLNode x, AVLTree t)
+	 * protected int joinOrdered(AVLNode x, AVLTree t, boolean tIsAfter)
 	 * <p>
-	 * joins t and x with the tree.
+	 * Same as join, with the order given instead of found by comparing keys:
+	 * the tree becomes (tree, x, t) if tIsAfter, otherwise (t, x, tree).
 	 * Returns the complexity of the operation (|tree.rank - t.rank| + 1).
-	 * <p>
-	 * precondition: keys(t) < x < keys() or keys(t) > x > keys(). t/tree might be empty (rank = -1).
-	 * postcondition: none
 	 * Complexity: O(log n)
+	 * </p>
 	 */
-	public int join(IAVLNode x, AVLTree t) {
+	protected int joinOrdered(AVLNode x, AVLTree t, boolean tIsAfter) {
+		this.modCount++;
+		t.modCount++;
 		if (this.empty() && t.empty()) { // Both trees are empty.
-			this.insert(x.getKey(), x.getValue());
+			resetNode(x);
+			this.attachNodeAt(x, null, false);
 			return 1;
 		}
 		// One of the tree is empty
 		if (this.empty() && !t.empty()) {
-			t.insert(x.getKey(), x.getValue());
+			resetNode(x);
+			if (tIsAfter) t.attachNodeAt(x, t.minNode, false);
+			else t.attachNodeAt(x, t.maxNode, true);
 			this.root = t.root;
 			this.minNode = t.minNode;
 			this.maxNode = t.maxNode;
@@ -964,14 +2408,17 @@ public class AVLTree {
 			return Math.abs(-1 - t.root.height) + 1;
 		}
 		if (!this.empty() && t.empty()) {
-			this.insert(x.getKey(), x.getValue());
+			resetNode(x);
+			if (tIsAfter) this.attachNodeAt(x, this.maxNode, true);
+			else this.attachNodeAt(x, this.minNode, false);
 			return Math.abs(this.root.getHeight() + 1) + 1;
 		}
 
 		// Both of size > 0:
 		int rtrnComplexity = joinComplexity(this, t);
-		AVLTree biggerKeys = this.root.getKey() > t.root.getKey() ? this : t;
-		AVLTree smallerKeys = this.root.getKey() < t.root.getKey() ? this : t;
+		if (AVLTreeEvents.ENABLED) AVLTreeEvents.join(rtrnComplexity - 1);
+		AVLTree biggerKeys = tIsAfter ? t : this;
+		AVLTree smallerKeys = tIsAfter ? this : t;
 
 		if (biggerKeys.size >= smallerKeys.size) {
 			AVLNode rightSonOfX = (AVLNode) biggerKeys.getRoot();
@@ -1018,9 +2465,8 @@ public class AVLTree {
 		x.setHeight(Math.max(x.getRight().getHeight(), x.getLeft().getHeight()) + 1);
 		updateSize(x);
 
-		AVLNode newRoot = (AVLNode) x;
-		this.root = this.getNewRoot(newRoot);
-		insertRebalance((AVLNode) x, true); // Rebalance tree after join.
+		this.root = this.getNewRoot(x);
+		insertRebalance(x); // Rebalance tree after join.
 		this.size = this.root.size;
 		updateMaxMin();
 		return rtrnComplexity;
@@ -1064,6 +2510,138 @@ public class AVLTree {
 		return Math.abs(tree.root.getHeight() - otherTree.root.getHeight()) + 1;
 	}
 
+	/**
+	 * public FrozenAVLTree freeze()
+	 * <p>
+	 * Returns an immutable, read-only copy of the tree in an Eytzinger (BFS order) array layout.
+	 * The tree itself is left unchanged.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public FrozenAVLTree freeze() {
+		if (this.size == 0) return new FrozenAVLTree(thawTree(), new int[0], new String[0]);
+		buildInOrderArrays();
+		return new FrozenAVLTree(thawTree(), this.inOrderKeyArray.clone(), this.inOrderValueArray.clone());
+	}
+
+	/**
+	 * protected AVLTree thawTree()
+	 * <p>
+	 * Returns a new empty tree of the type a frozen copy of this tree thaws into (see FrozenAVLTree.thaw):
+	 * this tree's type, unless its nodes hold more than a key and infos, which a frozen tree doesn't keep.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	protected AVLTree thawTree() {
+		return newTree();
+	}
+
+	/**
+	 * static private AVLTree buildBalancedTree(AVLTree tree, int[] keys, String[] values)
+	 * <p>
+	 * Builds a perfectly balanced tree in the empty tree, from keys sorted in ascending order and their values.
+	 * A key which repeats (the items of a MultiAVLTree node) gets a single node, its other values are
+	 * inserted into it afterwards.
+	 * Used by FrozenAVLTree.thaw.
+	 * Complexity: O(n), plus O(log n) for every repeated key
+	 * </p>
+	 */
+	static private AVLTree buildBalancedTree(AVLTree tree, int[] keys, String[] values) {
+		if (keys.length == 0) return tree;
+		IAVLNode[] nodes = new IAVLNode[keys.length];
+		int nodeCount = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (i == 0 || keys[i] != keys[i - 1]) nodes[nodeCount++] = tree.newNode(keys[i], values[i]);
+		}
+		tree.root = tree.relinkBalanced(nodes, 0, nodeCount - 1);
+		tree.root.setParent(null);
+		tree.size = nodeCount;
+		tree.updateMaxMin();
+		for (int i = 1; i < keys.length; i++) {
+			if (keys[i] == keys[i - 1]) tree.insert(keys[i], values[i]);
+		}
+		return tree;
+	}
+
+	/**
+	 * private AVLNode relinkBalanced(IAVLNode[] nodes, int low, int high)
+	 * <p>
+	 * Recursively links nodes[low..high] (sorted by key) into a balanced subtree,
+	 * sets heights and sizes bottom-up. Returns the subtree root.
+	 * Supports buildBalancedTree and rebuildBalanced methods.
+	 * Complexity: O(high - low)
+	 * </p>
+	 */
+	private AVLNode relinkBalanced(IAVLNode[] nodes, int low, int high) {
+		if (low > high) return this.VIRTUAL_NODE;
+		int middle = (low + high) >>> 1;
+		AVLNode node = (AVLNode) nodes[middle];
+		AVLNode left = relinkBalanced(nodes, low, middle - 1);
+		AVLNode right = relinkBalanced(nodes, middle + 1, high);
+		node.setLeft(left);
+		node.setRight(right);
+		if (left.isRealNode()) left.setParent(node);
+		if (right.isRealNode()) right.setParent(node);
+		node.setHeight(Math.max(left.getHeight(), right.getHeight()) + 1);
+		updateSize(node);
+		return node;
+	}
+
+	/**
+	 * public enum RebalancePolicy
+	 * <p>
+	 * AVL - the default, inserts and deletes restore the AVL invariants on the way to the root.
+	 * RELAXED - relaxed AVL (deletion without rebalancing): deletes only unlink the node and update sizes,
+	 * inserts rebalance by rank differences as in AVL. The height stays logarithmic in the number of inserts,
+	 * and the tree is rebuilt balanced once there were more deletions than remaining items.
+	 * Suited for write-heavy bursts, since deletes do no rotations.
+	 */
+	public enum RebalancePolicy {
+		AVL,
+		RELAXED
+	}
+
+	/**
+	 * public static final Aggregate ITEM_HASH
+	 * <p>
+	 * A hash of the items in a key range, for comparing trees with diff (a Merkle-style hash over the tree).
+	 * Each item is hashed from its key and info, and the hashes are added up (mod 2^64). Addition is commutative,
+	 * so a range's hash depends only on its items, not on how the tree's shape splits the range into subtrees.
+	 * </p>
+	 */
+	public static final Aggregate ITEM_HASH = new Aggregate() {
+		public long identity() {
+			return 0;
+		}
+
+		public long lift(IAVLNode node) {
+			String value = node.getValue();
+			long z = ((long) node.getKey() << 32 | (value == null ? 0 : value.hashCode()) & 0xFFFFFFFFL) + 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L; // SplitMix64 finalizer.
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+
+		public long combine(long left, long right) {
+			return left + right;
+		}
+	};
+
+	/**
+	 * public interface Aggregate
+	 * <p>
+	 * A monoid over the items of the tree, e.g. sum of values, max of values or count of flagged items.
+	 * combine must be associative and identity must be its neutral element.
+	 * combine is called with arguments in key order, so it doesn't have to be commutative.
+	 */
+	public interface Aggregate {
+		public long identity(); // The neutral element of combine.
+
+		public long lift(IAVLNode node); // The aggregate of a single item.
+
+		public long combine(long left, long right); // Combines the aggregates of two adjacent key ranges.
+	}
+
 	/**
 	 * public interface IAVLNode
 	 * ! Do not delete or modify this - otherwise all tests will fail !
@@ -1109,8 +2687,9 @@ public class AVLTree {
 		private boolean isRealNode;
 		private int height;
 		private int size;
+		private long aggregateValue; // Aggregate of the subtree, used only if the tree has an aggregate.
 
-		// Builds a virtual Node
+		// Builds a virtual Node, its key (-1) is never compared since every descent stops on isRealNode.
 		public AVLNode() {
 			this.key = -1;
 			this.value = null;
@@ -1138,6 +2717,27 @@ public class AVLTree {
 			return this.value;
 		}
 
+		// Changing a value through a node isn't seen by the tree's cached in-order arrays and aggregates, use compute.
+		public void setValue(String value) {
+			this.value = value;
+		}
+
+		// Number of items held by the node, counted by the size field (1 unless a subclass holds several).
+		protected int weight() {
+			return 1;
+		}
+
+		// Info of the node's item-th item (0 <= item < weight()), in the order the in-order export writes them.
+		protected String valueAt(int item) {
+			return getValue();
+		}
+
+		// Replaces all items of the node by a single item with info value (for compute), returns the change in weight.
+		protected int replaceValue(String value) {
+			setValue(value);
+			return 0;
+		}
+
 		public void setLeft(IAVLNode node) {
 			this.left = node;
 		}
@@ -1174,10 +2774,230 @@ public class AVLTree {
 			return height;
 		}
 	}
-}
-
-
-
-
 
+	/**
+	 * private static class ExportTask
+	 * <p>
+	 * Exports a subtree to its slice of the output arrays: the node's own slot, and its two subtrees
+	 * as parallel sub-tasks (or by fillInOrder once they are small).
+	 */
+	private static class ExportTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final AVLNode node;
+		private final int[] keys;
+		private final String[] values;
+		private final int offset;
+
+		private ExportTask(AVLNode node, int[] keys, String[] values, int offset) {
+			this.node = node;
+			this.keys = keys;
+			this.values = values;
+			this.offset = offset;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.node.size <= PARALLEL_EXPORT_THRESHOLD) {
+				fillInOrder(this.node, this.keys, this.values, this.offset);
+				return;
+			}
+			int index = this.offset + ((AVLNode) this.node.left).size;
+			int rightOffset = index + this.node.weight();
+			for (int item = 0; index < rightOffset; item++, index++) {
+				if (this.keys != null) this.keys[index] = this.node.key;
+				if (this.values != null) this.values[index] = this.node.valueAt(item);
+			}
+			invokeAll(new ExportTask((AVLNode) this.node.left, this.keys, this.values, this.offset),
+					new ExportTask((AVLNode) this.node.right, this.keys, this.values, rightOffset));
+		}
+	}
 
+	/**
+	 * public static class FrozenAVLTree
+	 * <p>
+	 * An immutable snapshot of an AVLTree for build-once, read-many workloads.
+	 * Keys are stored in Eytzinger (BFS) order: the root is at index 1 and the sons of i are at 2i and 2i+1,
+	 * so the top levels of every search share the same few cache lines.
+	 * The search loop is branch-free (the comparison result is added to the index), and ends on the
+	 * lower bound of the probe key. Each Eytzinger slot also records its in-order rank, which indexes
+	 * the sorted key/info arrays used for order statistics, min/max and thaw.
+	 * Java has no portable software prefetch, the layout is what provides the locality.
+	 * The descent compares one key per level: the keys a SIMD compare would load together (a level of the
+	 * Eytzinger array) are not the ones a single descent needs, and the Vector API is still an incubator module.
+	 * </p>
+	 */
+	public static class FrozenAVLTree {
+		private final int[] eytzingerKeys; // 1-based, index 0 is unused.
+		private final int[] eytzingerRanks; // In-order rank of the key in the same slot.
+		private final int[] sortedKeys;
+		private final String[] sortedValues;
+		private final AVLTree emptyTree; // An empty tree of the type to thaw into, thaw builds into a new one.
+
+		// Builds a frozen tree from keys sorted in ascending order and their values.
+		private FrozenAVLTree(AVLTree emptyTree, int[] sortedKeys, String[] sortedValues) {
+			this.emptyTree = emptyTree;
+			this.sortedKeys = sortedKeys;
+			this.sortedValues = sortedValues;
+			this.eytzingerKeys = new int[sortedKeys.length + 1];
+			this.eytzingerRanks = new int[sortedKeys.length + 1];
+			fillEytzinger(1, 0);
+		}
+
+		/**
+		 * private int fillEytzinger(int slot, int rank)
+		 * <p>
+		 * Fills the Eytzinger arrays with an in-order traversal of the implicit tree rooted at slot.
+		 * Returns the next unused rank.
+		 * Complexity: O(n)
+		 * </p>
+		 */
+		private int fillEytzinger(int slot, int rank) {
+			if (slot >= this.eytzingerKeys.length) return rank;
+			rank = fillEytzinger(2 * slot, rank);
+			this.eytzingerKeys[slot] = this.sortedKeys[rank];
+			this.eytzingerRanks[slot] = rank;
+			rank++;
+			return fillEytzinger(2 * slot + 1, rank);
+		}
+
+		/**
+		 * private int lowerBoundSlot(int k)
+		 * <p>
+		 * Branch-free descent of the Eytzinger array.
+		 * Returns the slot of the smallest key >= k, or 0 if all keys are smaller than k.
+		 * Complexity: O(log n)
+		 * </p>
+		 */
+		private int lowerBoundSlot(int k) {
+			int[] keys = this.eytzingerKeys;
+			int slot = 1;
+			while (slot < keys.length) {
+				slot = 2 * slot + (keys[slot] < k ? 1 : 0);
+			}
+			// Cancel the trailing right turns (and the last left turn) to get back to the lower bound.
+			return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+		}
+
+		/**
+		 * public String search(int k)
+		 * <p>
+		 * Returns the info of an item with key k if it exists in the tree,
+		 * otherwise returns null.
+		 * Complexity: O(log n)
+		 * </p>
+		 */
+		public String search(int k) {
+			int slot = lowerBoundSlot(k);
+			if (slot == 0 || this.eytzingerKeys[slot] != k) return null;
+			return this.sortedValues[this.eytzingerRanks[slot]];
+		}
+
+		/**
+		 * public int rank(int k)
+		 * <p>
+		 * Returns the number of keys in the tree which are smaller than k.
+		 * Complexity: O(log n)
+		 * </p>
+		 */
+		public int rank(int k) {
+			int slot = lowerBoundSlot(k);
+			if (slot == 0) return this.sortedKeys.length;
+			return this.eytzingerRanks[slot];
+		}
+
+		/**
+		 * public int select(int i)
+		 * <p>
+		 * Returns the key with rank i, i.e. the (i+1)-th smallest key in the tree.
+		 * precondition: 0 <= i < size()
+		 * Complexity: O(1)
+		 * </p>
+		 */
+		public int select(int i) {
+			return this.sortedKeys[i];
+		}
+
+		/**
+		 * public String min()
+		 * <p>
+		 * Returns the info of the item with the smallest key in the tree,
+		 * or null if the tree is empty.
+		 * Complexity: O(1)
+		 * </p>
+		 */
+		public String min() {
+			if (this.sortedValues.length == 0) return null;
+			return this.sortedValues[0];
+		}
+
+		/**
+		 * public String max()
+		 * <p>
+		 * Returns the info of the item with the largest key in the tree,
+		 * or null if the tree is empty.
+		 * Complexity: O(1)
+		 * </p>
+		 */
+		public String max() {
+			if (this.sortedValues.length == 0) return null;
+			return this.sortedValues[this.sortedValues.length - 1];
+		}
+
+		/**
+		 * public int size()
+		 * <p>
+		 * Returns the number of items in the tree.
+		 * Complexity: O(1)
+		 * </p>
+		 */
+		public int size() {
+			return this.sortedKeys.length;
+		}
+
+		/**
+		 * public boolean empty()
+		 * <p>
+		 * Returns true if and only if the tree is empty.
+		 * Complexity: O(1)
+		 * </p>
+		 */
+		public boolean empty() {
+			return this.sortedKeys.length == 0;
+		}
+
+		/**
+		 * public int[] keysToArray()
+		 * <p>
+		 * Returns a sorted array which contains all keys in the tree.
+		 * Complexity: O(n)
+		 * </p>
+		 */
+		public int[] keysToArray() {
+			return this.sortedKeys.clone();
+		}
+
+		/**
+		 * public String[] infoToArray()
+		 * <p>
+		 * Returns an array which contains all info in the tree, sorted by their respective keys.
+		 * Complexity: O(n)
+		 * </p>
+		 */
+		public String[] infoToArray() {
+			return this.sortedValues.clone();
+		}
+
+		/**
+		 * public AVLTree thaw()
+		 * <p>
+		 * Returns a new, mutable and perfectly balanced AVLTree with the items of this tree,
+		 * of the same type as the tree which was frozen (e.g. a MultiAVLTree thaws into a MultiAVLTree, see thawTree).
+		 * Complexity: O(n)
+		 * </p>
+		 */
+		public AVLTree thaw() {
+			return buildBalancedTree(this.emptyTree.newTree(), this.sortedKeys, this.sortedValues);
+		}
+	}
+}
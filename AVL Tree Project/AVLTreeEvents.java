@@ -0,0 +1,249 @@
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * AVLTreeEvents
+ *
+ * Optional instrumentation of AVLTree's hot paths: Java Flight Recorder events and process wide counters
+ * of descent depths, rebalancing cases, join height differences and array export sizes.
+ * Enabled by running with -Davltree.events=true. ENABLED is a static final constant, so when it is false
+ * the JIT removes every "if (AVLTreeEvents.ENABLED)" block of the tree, and the instrumentation costs nothing.
+ *
+ */
+
+
+public final class AVLTreeEvents {
+
+	public static final boolean ENABLED = Boolean.getBoolean("avltree.events");
+
+	// Insert rebalancing cases (the delete cases are checkState's 0-6).
+	public static final int INSERT_PROMOTE = 0;
+	public static final int INSERT_SINGLE_ROTATION = 1;
+	public static final int INSERT_DOUBLE_ROTATION = 2;
+
+	private static final LongAdder descents = new LongAdder();
+	private static final LongAdder descentDepths = new LongAdder();
+	private static final LongAdder[] deleteCases = newCounters(7);
+	private static final LongAdder[] insertCases = newCounters(3);
+	private static final LongAdder joins = new LongAdder();
+	private static final LongAdder joinHeightDifferences = new LongAdder();
+	private static final LongAdder exportedItems = new LongAdder();
+
+	private AVLTreeEvents() {
+	}
+
+	private static LongAdder[] newCounters(int count) {
+		LongAdder[] counters = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			counters[i] = new LongAdder();
+		}
+		return counters;
+	}
+
+	/**
+	 * static void descent(String operation, int depth, boolean found)
+	 * <p>
+	 * Records a descent of depth nodes. operation names the caller: "search" (search, delete and the subclasses'
+	 * lookups), "insert" (insert, fingerInsert and the subclasses' typed inserts), "upsert" (compute, fingerPut and MultiAVLTree.insert,
+	 * which find the key or its parent in one descent) or "fingerSearch".
+	 * Lookups answered without a descent are recorded with depth 0, under the structure which answered them:
+	 * "index" (the hash index), "filter" (an absent key rejected by the membership filter) or "cache" (search's front cache),
+	 * so the descent count is the number of lookups and the mean depth includes the O(1) ones.
+	 * </p>
+	 */
+	static void descent(String operation, int depth, boolean found) {
+		descents.increment();
+		descentDepths.add(depth);
+		DescentEvent event = new DescentEvent();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.depth = depth;
+			event.found = found;
+			event.commit();
+		}
+	}
+
+	/**
+	 * static void deleteRebalanceCase(int state)
+	 * <p>
+	 * Records a delete rebalancing step of checkState case state (0 demote, 1-4 single rotations, 5-6 double rotations).
+	 * </p>
+	 */
+	static void deleteRebalanceCase(int state) {
+		if (state >= 0) deleteCases[state].increment();
+		rebalance("delete", state);
+	}
+
+	/**
+	 * static void insertRebalanceCase(int state)
+	 * <p>
+	 * Records an insert (or join) rebalancing step, one of the INSERT_ cases.
+	 * </p>
+	 */
+	static void insertRebalanceCase(int state) {
+		insertCases[state].increment();
+		rebalance("insert", state);
+	}
+
+	private static void rebalance(String operation, int state) {
+		RebalanceEvent event = new RebalanceEvent();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.rebalanceCase = state;
+			event.commit();
+		}
+	}
+
+	/**
+	 * static void join(int heightDifference)
+	 * <p>
+	 * Records a join of two non-empty trees (including the joins done by split) whose heights differ by heightDifference.
+	 * </p>
+	 */
+	static void join(int heightDifference) {
+		joins.increment();
+		joinHeightDifferences.add(heightDifference);
+		JoinEvent event = new JoinEvent();
+		if (event.shouldCommit()) {
+			event.heightDifference = heightDifference;
+			event.commit();
+		}
+	}
+
+	/**
+	 * static void export(int items)
+	 * <p>
+	 * Records the materialization of items keys and infos by keysToArray/infoToArray.
+	 * </p>
+	 */
+	static void export(int items) {
+		exportedItems.add(items);
+		ExportEvent event = new ExportEvent();
+		if (event.shouldCommit()) {
+			event.items = items;
+			event.commit();
+		}
+	}
+
+	/**
+	 * public static double averageDescentDepth()
+	 * <p>
+	 * Returns the average number of nodes visited by a descent, or 0 if there were none.
+	 * </p>
+	 */
+	public static double averageDescentDepth() {
+		long count = descents.sum();
+		return count == 0 ? 0 : (double) descentDepths.sum() / count;
+	}
+
+	/**
+	 * public static long[] deleteRebalanceCases()
+	 * <p>
+	 * Returns the number of delete rebalancing steps of each checkState case 0-6.
+	 * </p>
+	 */
+	public static long[] deleteRebalanceCases() {
+		return sums(deleteCases);
+	}
+
+	/**
+	 * public static long[] insertRebalanceCases()
+	 * <p>
+	 * Returns the number of insert rebalancing steps, indexed by the INSERT_ cases.
+	 * </p>
+	 */
+	public static long[] insertRebalanceCases() {
+		return sums(insertCases);
+	}
+
+	/**
+	 * public static double averageJoinHeightDifference()
+	 * <p>
+	 * Returns the average height difference of joined trees, or 0 if there were no joins.
+	 * </p>
+	 */
+	public static double averageJoinHeightDifference() {
+		long count = joins.sum();
+		return count == 0 ? 0 : (double) joinHeightDifferences.sum() / count;
+	}
+
+	/**
+	 * public static long exportedItems()
+	 * <p>
+	 * Returns the total number of items materialized by keysToArray/infoToArray.
+	 * </p>
+	 */
+	public static long exportedItems() {
+		return exportedItems.sum();
+	}
+
+	/**
+	 * public static void reset()
+	 * <p>
+	 * Zeroes all counters.
+	 * </p>
+	 */
+	public static void reset() {
+		descents.reset();
+		descentDepths.reset();
+		for (LongAdder counter : deleteCases) counter.reset();
+		for (LongAdder counter : insertCases) counter.reset();
+		joins.reset();
+		joinHeightDifferences.reset();
+		exportedItems.reset();
+	}
+
+	private static long[] sums(LongAdder[] counters) {
+		long[] sums = new long[counters.length];
+		for (int i = 0; i < counters.length; i++) {
+			sums[i] = counters[i].sum();
+		}
+		return sums;
+	}
+
+	@Name("avltree.Descent")
+	@Label("AVL Tree Descent")
+	@Category("AVL Tree")
+	static class DescentEvent extends Event {
+		@Label("Operation")
+		String operation;
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Found")
+		boolean found;
+	}
+
+	@Name("avltree.Rebalance")
+	@Label("AVL Tree Rebalance Step")
+	@Category("AVL Tree")
+	static class RebalanceEvent extends Event {
+		@Label("Operation")
+		String operation;
+
+		@Label("Case")
+		int rebalanceCase;
+	}
+
+	@Name("avltree.Join")
+	@Label("AVL Tree Join")
+	@Category("AVL Tree")
+	static class JoinEvent extends Event {
+		@Label("Height Difference")
+		int heightDifference;
+	}
+
+	@Name("avltree.Export")
+	@Label("AVL Tree Array Export")
+	@Category("AVL Tree")
+	static class ExportEvent extends Event {
+		@Label("Items")
+		int items;
+	}
+}
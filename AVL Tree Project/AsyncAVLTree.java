@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+/**
+ *
+ * AsyncAVLTree
+ *
+ * An asynchronous front-end to an AVLTree: operations are put on a bounded queue by any number of threads,
+ * and a single owner thread drains the queue in batches and applies them to the tree (flat combining).
+ * Only the owner thread touches the tree, so the tree itself needs no locks.
+ * Every operation returns a CompletableFuture, which is completed by the owner thread once its batch is applied.
+ *
+ */
+
+
+public class AsyncAVLTree implements AutoCloseable {
+
+	private static final int DEFAULT_MAX_BATCH = 256;
+
+	private final AVLTree tree;
+	private final BlockingQueue<Request<?>> queue;
+	private final int maxBatch;
+	private final Thread owner;
+	private volatile boolean closed;
+	private volatile boolean terminated;
+
+	/**
+	 * public AsyncAVLTree(int capacity)
+	 * <p>
+	 * Creates a front-end to a new, empty AVLTree, with a queue of capacity operations
+	 * and a platform daemon thread as the owner.
+	 * </p>
+	 */
+	public AsyncAVLTree(int capacity) {
+		this(new AVLTree(), capacity, DEFAULT_MAX_BATCH, null);
+	}
+
+	/**
+	 * public AsyncAVLTree(AVLTree tree, int capacity, int maxBatch, ThreadFactory threadFactory)
+	 * <p>
+	 * Creates a front-end to tree, which must not be used directly afterwards.
+	 * The owner thread drains up to maxBatch operations at a time and is created by threadFactory
+	 * (a platform daemon thread if null). Callers blocking on the futures can be virtual threads
+	 * (Java 21+), they park instead of holding a carrier thread while waiting.
+	 * </p>
+	 */
+	public AsyncAVLTree(AVLTree tree, int capacity, int maxBatch, ThreadFactory threadFactory) {
+		if (maxBatch < 1) throw new IllegalArgumentException("Batch size must be positive, got " + maxBatch);
+		this.tree = tree;
+		this.queue = new ArrayBlockingQueue<Request<?>>(capacity);
+		this.maxBatch = maxBatch;
+		Runnable ownerLoop = new Runnable() {
+			public void run() {
+				drainLoop();
+			}
+		};
+		if (threadFactory == null) {
+			this.owner = new Thread(ownerLoop, "avl-tree-owner");
+			this.owner.setDaemon(true);
+		}
+		else {
+			this.owner = threadFactory.newThread(ownerLoop);
+		}
+		this.owner.start();
+	}
+
+	/**
+	 * public CompletableFuture<String> search(int k)
+	 * <p>
+	 * Asynchronous AVLTree.search.
+	 * </p>
+	 */
+	public CompletableFuture<String> search(final int k) {
+		return submit(new Function<AVLTree, String>() {
+			public String apply(AVLTree t) {
+				return t.search(k);
+			}
+		});
+	}
+
+	/**
+	 * public CompletableFuture<Integer> insert(int k, String i)
+	 * <p>
+	 * Asynchronous AVLTree.insert.
+	 * </p>
+	 */
+	public CompletableFuture<Integer> insert(final int k, final String i) {
+		return submit(new Function<AVLTree, Integer>() {
+			public Integer apply(AVLTree t) {
+				return t.insert(k, i);
+			}
+		});
+	}
+
+	/**
+	 * public CompletableFuture<Integer> delete(int k)
+	 * <p>
+	 * Asynchronous AVLTree.delete.
+	 * </p>
+	 */
+	public CompletableFuture<Integer> delete(final int k) {
+		return submit(new Function<AVLTree, Integer>() {
+			public Integer apply(AVLTree t) {
+				return t.delete(k);
+			}
+		});
+	}
+
+	/**
+	 * public CompletableFuture<String> compute(int k, Function<String, String> remapping)
+	 * <p>
+	 * Asynchronous AVLTree.compute, remapping runs on the owner thread.
+	 * </p>
+	 */
+	public CompletableFuture<String> compute(final int k, final Function<String, String> remapping) {
+		return submit(new Function<AVLTree, String>() {
+			public String apply(AVLTree t) {
+				return t.compute(k, remapping);
+			}
+		});
+	}
+
+	/**
+	 * public <T> CompletableFuture<T> submit(Function<AVLTree, T> operation)
+	 * <p>
+	 * Queues operation to be applied to the tree by the owner thread, in submission order per caller.
+	 * Blocks while the queue is full (back-pressure). An exception or error thrown by operation completes
+	 * its future exceptionally and doesn't affect the other operations of the batch.
+	 * Dependent actions of the future run on the owner thread, so they must be short and non-blocking.
+	 * </p>
+	 */
+	public <T> CompletableFuture<T> submit(Function<AVLTree, T> operation) {
+		if (this.closed) throw new IllegalStateException("AsyncAVLTree is closed");
+		Request<T> request = new Request<T>(operation);
+		try {
+			this.queue.put(request);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			request.future.completeExceptionally(e);
+			return request.future;
+		}
+		if (this.terminated) failPending(); // The owner may have finished before the request was queued.
+		return request.future;
+	}
+
+	/**
+	 * public void close()
+	 * <p>
+	 * Stops accepting operations, and lets the owner thread apply the queued ones and exit.
+	 * Doesn't wait for the owner thread.
+	 * </p>
+	 */
+	public void close() {
+		if (this.closed) return;
+		this.closed = true;
+		this.owner.interrupt(); // Wakes the owner if it waits on an empty queue.
+	}
+
+	/**
+	 * private void drainLoop()
+	 * <p>
+	 * The owner thread's loop: takes the next operation, drains up to maxBatch - 1 more without waiting,
+	 * applies them all to the tree, and then completes their futures.
+	 * </p>
+	 */
+	private void drainLoop() {
+		List<Request<?>> batch = new ArrayList<Request<?>>(this.maxBatch);
+		try {
+			while (!this.closed || !this.queue.isEmpty()) {
+				Request<?> first;
+				try {
+					first = this.queue.take();
+				} catch (InterruptedException e) {
+					continue; // Interrupted by close, the loop condition decides.
+				}
+				batch.add(first);
+				this.queue.drainTo(batch, this.maxBatch - 1);
+				for (Request<?> request : batch) {
+					request.apply(this.tree);
+				}
+				for (Request<?> request : batch) {
+					request.complete();
+				}
+				batch.clear();
+			}
+		} finally {
+			this.terminated = true;
+			for (Request<?> request : batch) { // Left uncompleted if the loop itself failed.
+				request.future.completeExceptionally(new IllegalStateException("AsyncAVLTree owner thread stopped"));
+			}
+			failPending();
+		}
+	}
+
+	// Fails the operations which were queued after the owner thread stopped.
+	private void failPending() {
+		List<Request<?>> pending = new ArrayList<Request<?>>();
+		this.queue.drainTo(pending);
+		for (Request<?> request : pending) {
+			request.future.completeExceptionally(new IllegalStateException("AsyncAVLTree is closed"));
+		}
+	}
+
+	/**
+	 * private static class Request<T>
+	 * <p>
+	 * A queued operation, with its result kept until the whole batch is applied.
+	 */
+	private static class Request<T> {
+		private final Function<AVLTree, T> operation;
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+		private T result;
+		private Throwable failure;
+
+		private Request(Function<AVLTree, T> operation) {
+			this.operation = operation;
+		}
+
+		private void apply(AVLTree tree) {
+			try {
+				this.result = this.operation.apply(tree);
+			} catch (Throwable e) { // Errors too, they fail this operation only and the owner thread goes on.
+				this.failure = e;
+			}
+		}
+
+		private void complete() {
+			if (this.failure != null) {
+				this.future.completeExceptionally(this.failure);
+			}
+			else {
+				this.future.complete(this.result);
+			}
+		}
+	}
+}
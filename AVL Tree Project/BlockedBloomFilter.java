@@ -0,0 +1,145 @@
+/**
+ *
+ * BlockedBloomFilter
+ *
+ * A Bloom filter over int keys, laid out in blocks of 512 bits (one 64-byte cache line):
+ * all bits of a key are in the same block, so add and mightContain touch a single cache line.
+ * Answers "maybe present" or "definitely absent"; keys can't be removed.
+ *
+ */
+
+
+public final class BlockedBloomFilter {
+
+	private static final int BLOCK_LONGS = 8; // 512 bits per block.
+	private static final int BLOCK_BITS = BLOCK_LONGS * Long.SIZE;
+	private static final int MAX_HASH_COUNT = 16;
+
+	private final long[] bits;
+	private final int blockCount;
+	private final int hashCount;
+	private final int capacity;
+	private final double falsePositiveRate;
+	private int count;
+
+	/**
+	 * public BlockedBloomFilter(int capacity, double falsePositiveRate)
+	 * <p>
+	 * Creates an empty filter sized for capacity keys at (about) the given false positive rate:
+	 * -ln(rate) / ln(2)^2 bits and ln(2) * bits hash functions per key.
+	 * Blocking raises the actual rate somewhat above the classic formula, mostly for rates below 0.1%.
+	 * precondition: 0 < falsePositiveRate < 1
+	 * </p>
+	 */
+	public BlockedBloomFilter(int capacity, double falsePositiveRate) {
+		if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) throw new IllegalArgumentException("False positive rate must be in (0, 1), got " + falsePositiveRate);
+		this.capacity = Math.max(1, capacity);
+		this.falsePositiveRate = falsePositiveRate;
+		double bitsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		long totalBits = (long) Math.ceil(this.capacity * bitsPerKey);
+		this.blockCount = (int) Math.max(1, (totalBits + BLOCK_BITS - 1) / BLOCK_BITS);
+		this.hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerKey * Math.log(2))));
+		this.bits = new long[this.blockCount * BLOCK_LONGS];
+	}
+
+	/**
+	 * public void add(int key)
+	 * <p>
+	 * Adds key to the filter.
+	 * Complexity: O(hash count), one cache line
+	 * </p>
+	 */
+	public void add(int key) {
+		long hash = mix(key);
+		int base = blockOf(hash) * BLOCK_LONGS;
+		int first = (int) hash;
+		int step = (int) (hash >>> 32) | 1; // Odd, so the probes don't repeat within the block.
+		for (int i = 0; i < this.hashCount; i++) {
+			int bit = (first + i * step) & (BLOCK_BITS - 1);
+			this.bits[base + (bit >>> 6)] |= 1L << bit;
+		}
+		this.count++;
+	}
+
+	/**
+	 * public boolean mightContain(int key)
+	 * <p>
+	 * Returns false if key was definitely never added, true if it may have been.
+	 * Complexity: O(hash count), one cache line
+	 * </p>
+	 */
+	public boolean mightContain(int key) {
+		long hash = mix(key);
+		int base = blockOf(hash) * BLOCK_LONGS;
+		int first = (int) hash;
+		int step = (int) (hash >>> 32) | 1;
+		for (int i = 0; i < this.hashCount; i++) {
+			int bit = (first + i * step) & (BLOCK_BITS - 1);
+			if ((this.bits[base + (bit >>> 6)] & (1L << bit)) == 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * public boolean canUnion(BlockedBloomFilter other)
+	 * <p>
+	 * Returns true if other has the same geometry (blocks and hash functions), so union applies.
+	 * </p>
+	 */
+	public boolean canUnion(BlockedBloomFilter other) {
+		return other.blockCount == this.blockCount && other.hashCount == this.hashCount;
+	}
+
+	/**
+	 * public void union(BlockedBloomFilter other)
+	 * <p>
+	 * Adds all keys of other to this filter (a bitwise or).
+	 * precondition: canUnion(other)
+	 * Complexity: O(size of the filter)
+	 * </p>
+	 */
+	public void union(BlockedBloomFilter other) {
+		if (!canUnion(other)) throw new IllegalArgumentException("Filters of different geometries can't be united");
+		if (other == this) return;
+		for (int i = 0; i < this.bits.length; i++) {
+			this.bits[i] |= other.bits[i];
+		}
+		this.count += other.count;
+	}
+
+	// Number of keys added (with repetitions), and the number of keys the filter was sized for.
+	public int count() {
+		return this.count;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	public double falsePositiveRate() {
+		return this.falsePositiveRate;
+	}
+
+	/**
+	 * public long sizeInBytes()
+	 * <p>
+	 * Returns the memory taken by the filter's bits.
+	 * </p>
+	 */
+	public long sizeInBytes() {
+		return (long) this.bits.length * Long.BYTES;
+	}
+
+	// Maps the high half of the hash to a block (multiply-shift range reduction, no modulo).
+	private int blockOf(long hash) {
+		return (int) (((hash >>> 32) * this.blockCount) >>> 32);
+	}
+
+	// SplitMix64 finalizer: spreads consecutive keys over all 64 bits.
+	private static long mix(int key) {
+		long z = key + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ *
+ * ChangeFeed
+ *
+ * A change-data-capture feed of an AVLTree's changes (see AVLTree.setChangeFeed), for replicas and caches
+ * which follow the tree incrementally instead of re-reading it.
+ * Events are numbered by a sequence and kept in a ring buffer of primitive arrays, so recording one
+ * allocates nothing. Consumers poll from their own sequence at their own pace, the tree never waits for them:
+ * a consumer which falls more than the capacity behind has lost events (see lagged) and must re-read the tree.
+ * Not thread-safe: poll from the thread that changes the tree, or under the same lock.
+ *
+ */
+
+
+public final class ChangeFeed {
+
+	// Event types.
+	public static final byte INSERT = 0; // key was inserted with value.
+	public static final byte UPDATE = 1; // key's info was set to value.
+	public static final byte DELETE = 2; // key was deleted.
+	public static final byte INSERT_RANGE = 3; // Items with key <= k <= highKey were added in bulk (join), re-read them.
+	public static final byte DELETE_RANGE = 4; // All items with key <= k <= highKey were deleted (split, truncate, deleteRange).
+
+	private final byte[] types;
+	private final int[] keys;
+	private final int[] highKeys;
+	private final String[] values;
+	private final int mask;
+	private long nextSequence;
+
+	/**
+	 * public ChangeFeed(int capacity)
+	 * <p>
+	 * Creates an empty feed which keeps the last capacity (rounded up to a power of 2) events.
+	 * </p>
+	 */
+	public ChangeFeed(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+		int slots = Integer.highestOneBit(capacity);
+		if (slots < capacity) slots <<= 1;
+		this.types = new byte[slots];
+		this.keys = new int[slots];
+		this.highKeys = new int[slots];
+		this.values = new String[slots];
+		this.mask = slots - 1;
+	}
+
+	/**
+	 * void record(byte type, int key, int highKey, String value)
+	 * <p>
+	 * Appends an event, overwriting the oldest one if the buffer is full.
+	 * Complexity: O(1), no allocation
+	 * </p>
+	 */
+	void record(byte type, int key, int highKey, String value) {
+		int slot = (int) this.nextSequence & this.mask;
+		this.types[slot] = type;
+		this.keys[slot] = key;
+		this.highKeys[slot] = highKey;
+		this.values[slot] = value;
+		this.nextSequence++;
+	}
+
+	/**
+	 * public long nextSequence()
+	 * <p>
+	 * Returns the sequence number the next event will get (the number of events recorded so far).
+	 * A new consumer starts polling from it, after reading the tree.
+	 * </p>
+	 */
+	public long nextSequence() {
+		return this.nextSequence;
+	}
+
+	/**
+	 * public long oldestSequence()
+	 * <p>
+	 * Returns the sequence number of the oldest event still kept.
+	 * </p>
+	 */
+	public long oldestSequence() {
+		return Math.max(0, this.nextSequence - this.types.length);
+	}
+
+	/**
+	 * public boolean lagged(long sequence)
+	 * <p>
+	 * Returns true if events from sequence on were overwritten, i.e. a consumer at sequence can't catch up
+	 * from the feed anymore and must re-read the tree (and continue from nextSequence()).
+	 * </p>
+	 */
+	public boolean lagged(long sequence) {
+		return sequence < oldestSequence();
+	}
+
+	/**
+	 * public long poll(long sequence, Consumer consumer, int maxEvents)
+	 * <p>
+	 * Passes the events from sequence on, up to maxEvents of them, to consumer in order,
+	 * and returns the sequence to poll from next time. A consumer applies them to its copy in order,
+	 * re-reading the range of an INSERT_RANGE from the tree; events replayed over such a re-read are idempotent.
+	 * precondition: !lagged(sequence) and sequence <= nextSequence()
+	 * Complexity: O(number of events passed)
+	 * </p>
+	 */
+	public long poll(long sequence, Consumer consumer, int maxEvents) {
+		if (lagged(sequence)) throw new IllegalStateException("Events from sequence " + sequence + " were overwritten, the oldest kept is " + oldestSequence());
+		if (sequence > this.nextSequence) throw new IllegalArgumentException("Sequence " + sequence + " wasn't recorded yet");
+		long end = Math.min(this.nextSequence, sequence + Math.max(0, maxEvents));
+		for (; sequence < end; sequence++) {
+			int slot = (int) sequence & this.mask;
+			consumer.accept(sequence, this.types[slot], this.keys[slot], this.highKeys[slot], this.values[slot]);
+		}
+		return sequence;
+	}
+
+	/**
+	 * public int capacity()
+	 * <p>
+	 * Returns the number of events kept.
+	 * </p>
+	 */
+	public int capacity() {
+		return this.types.length;
+	}
+
+	/**
+	 * public interface Consumer
+	 * <p>
+	 * Receives the events of poll. For single key events highKey == key. value is null for range events and
+	 * deletes of whole keys (a MultiAVLTree records a DELETE with the value when the key keeps other values).
+	 * </p>
+	 */
+	public interface Consumer {
+		public void accept(long sequence, byte type, int key, int highKey, String value);
+	}
+}
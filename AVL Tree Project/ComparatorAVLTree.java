@@ -0,0 +1,483 @@
+import java.util.Comparator;
+
+/**
+ *
+ * ComparatorAVLTree
+ *
+ * An implementation of an AVL Tree with
+ * distinct keys of any type K, ordered by a Comparator, and values of type V.
+ * Every key is legal (there is no key sentinel, empty sons are null).
+ * Nodes keep parent pointers and subtree sizes: insert and delete descend once and rebalance on the way up,
+ * with the same rebalance cases (and counts) as AVLTree, and rank/select follow the sizes.
+ * Kept as a separate class so the int keyed AVLTree stays monomorphic.
+ *
+ */
+
+
+public class ComparatorAVLTree<K, V> {
+
+	private final Comparator<? super K> comparator;
+
+	private Node<K, V> root;
+	private Node<K, V> minNode;
+	private Node<K, V> maxNode;
+
+	/**
+	 * public ComparatorAVLTree(Comparator<? super K> comparator)
+	 * <p>
+	 * Builds an empty tree ordered by comparator.
+	 * </p>
+	 */
+	public ComparatorAVLTree(Comparator<? super K> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * public static <K extends Comparable<? super K>, V> ComparatorAVLTree<K, V> naturalOrder()
+	 * <p>
+	 * Builds an empty tree ordered by the natural ordering of the keys.
+	 * </p>
+	 */
+	public static <K extends Comparable<? super K>, V> ComparatorAVLTree<K, V> naturalOrder() {
+		return new ComparatorAVLTree<K, V>(Comparator.<K>naturalOrder());
+	}
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * Returns true if and only if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public boolean empty() {
+		return this.root == null;
+	}
+
+	/**
+	 * public V search(K k)
+	 * <p>
+	 * Returns the info of an item with key k if it exists in the tree.
+	 * otherwise, returns null.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public V search(K k) {
+		Node<K, V> node = findNode(k);
+		if (node == null) return null;
+		return node.value;
+	}
+
+	/**
+	 * public int insert(K k, V i)
+	 * <p>
+	 * Inserts an item with key k and info i to the AVL tree, with a single descent.
+	 * Returns the number of re-balancing operations, counted as in AVLTree.insert
+	 * (a promotion counts 1, a single rotation 2 and a double rotation 5),
+	 * or -1 if an item with key k already exists in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insert(K k, V i) {
+		Node<K, V> parent = null;
+		Node<K, V> node = this.root;
+		int comparison = 0;
+		while (node != null) {
+			comparison = this.comparator.compare(k, node.key);
+			if (comparison == 0) return -1;
+			parent = node;
+			node = comparison < 0 ? node.left : node.right;
+		}
+		Node<K, V> newNode = new Node<K, V>(k, i);
+		newNode.parent = parent;
+		if (parent == null) {
+			this.root = newNode;
+			this.minNode = newNode;
+			this.maxNode = newNode;
+			return 0;
+		}
+		if (comparison < 0) {
+			parent.left = newNode;
+			if (this.minNode == parent) this.minNode = newNode;
+		}
+		else {
+			parent.right = newNode;
+			if (this.maxNode == parent) this.maxNode = newNode;
+		}
+		return insertRebalance(parent);
+	}
+
+	/**
+	 * private Node<K, V> findNode(K k)
+	 * <p>
+	 * Returns the node with key k, or null if there is no such node.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private Node<K, V> findNode(K k) {
+		Node<K, V> node = this.root;
+		while (node != null) {
+			int comparison = this.comparator.compare(node.key, k);
+			if (comparison == 0) return node;
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * private int insertRebalance(Node<K, V> node)
+	 * <p>
+	 * Walks up from node, the parent of a new leaf, promoting nodes until a node whose height didn't change
+	 * or a rotation, which restores the height of the subtree. Updates the sizes up to the root.
+	 * Returns the number of re-balancing operations (see insert).
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int insertRebalance(Node<K, V> node) {
+		int changeCounter = 0;
+		while (node != null) {
+			node.size++;
+			int balanceFactor = height(node.left) - height(node.right);
+			if (balanceFactor == 2 || balanceFactor == -2) {
+				changeCounter += rotate(node, balanceFactor) ? 5 : 2;
+				node = node.parent; // The rotation moved node down, its parent is the new subtree root.
+				break;
+			}
+			int newHeight = Math.max(height(node.left), height(node.right)) + 1;
+			if (newHeight == node.height) break;
+			node.height = newHeight; // Promote.
+			changeCounter++;
+			node = node.parent;
+		}
+		if (node != null) node = node.parent;
+		for (; node != null; node = node.parent) {
+			node.size++;
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * public int delete(K k)
+	 * <p>
+	 * Deletes an item with key k from the tree, if it is there, with a single descent.
+	 * Returns the number of re-balancing operations, counted as in AVLTree.delete
+	 * (a demotion counts 1, a single rotation 3 and a double rotation 6),
+	 * or -1 if an item with key k was not found in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int delete(K k) {
+		Node<K, V> node = findNode(k);
+		if (node == null) return -1;
+		if (node.left != null && node.right != null) { // Move the successor's item here, and unlink the successor.
+			Node<K, V> successor = node.right;
+			while (successor.left != null) successor = successor.left;
+			node.key = successor.key;
+			node.value = successor.value;
+			if (this.maxNode == successor) this.maxNode = node;
+			node = successor;
+		}
+		else {
+			if (this.minNode == node) this.minNode = successor(node);
+			if (this.maxNode == node) this.maxNode = predecessor(node);
+		}
+		Node<K, V> son = node.left != null ? node.left : node.right;
+		Node<K, V> parent = node.parent;
+		if (son != null) son.parent = parent;
+		if (parent == null) this.root = son;
+		else if (parent.left == node) parent.left = son;
+		else parent.right = son;
+		return deleteRebalance(parent);
+	}
+
+	/**
+	 * private int deleteRebalance(Node<K, V> node)
+	 * <p>
+	 * Walks up from node, the parent of an unlinked node, demoting and rotating until a node
+	 * whose height didn't change. Updates the sizes up to the root.
+	 * Returns the number of re-balancing operations (see delete).
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int deleteRebalance(Node<K, V> node) {
+		int changeCounter = 0;
+		while (node != null) {
+			node.size--;
+			int balanceFactor = height(node.left) - height(node.right);
+			if (balanceFactor == 2 || balanceFactor == -2) {
+				changeCounter += rotate(node, balanceFactor) ? 6 : 3;
+				node = node.parent.parent; // Past the new subtree root, whose height may have dropped.
+				continue;
+			}
+			int newHeight = Math.max(height(node.left), height(node.right)) + 1;
+			if (newHeight == node.height) break;
+			node.height = newHeight; // Demote.
+			changeCounter++;
+			node = node.parent;
+		}
+		if (node != null) node = node.parent;
+		for (; node != null; node = node.parent) {
+			node.size--;
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * private boolean rotate(Node<K, V> node, int balanceFactor)
+	 * <p>
+	 * Restores the AVL invariant at node, whose balance factor is 2 or -2, by a single or double rotation.
+	 * Returns true if a double rotation was needed.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private boolean rotate(Node<K, V> node, int balanceFactor) {
+		if (balanceFactor == 2) {
+			boolean isDouble = height(node.left.left) < height(node.left.right);
+			if (isDouble) leftRotation(node.left);
+			rightRotation(node);
+			return isDouble;
+		}
+		boolean isDouble = height(node.right.right) < height(node.right.left);
+		if (isDouble) rightRotation(node.right);
+		leftRotation(node);
+		return isDouble;
+	}
+
+	/**
+	 * private void leftRotation(Node<K, V> x)
+	 * <p>
+	 * Performs a left rotation on x as the pivot node, x.right takes its place.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void leftRotation(Node<K, V> x) {
+		Node<K, V> y = x.right;
+		x.right = y.left;
+		if (y.left != null) y.left.parent = x;
+		replaceSon(x, y);
+		y.left = x;
+		x.parent = y;
+		update(x);
+		update(y);
+	}
+
+	/**
+	 * private void rightRotation(Node<K, V> y)
+	 * <p>
+	 * Performs a right rotation on y as the pivot node, y.left takes its place.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void rightRotation(Node<K, V> y) {
+		Node<K, V> x = y.left;
+		y.left = x.right;
+		if (x.right != null) x.right.parent = y;
+		replaceSon(y, x);
+		x.right = y;
+		y.parent = x;
+		update(y);
+		update(x);
+	}
+
+	// Links newSon in oldSon's place under oldSon's parent (or as the root).
+	private void replaceSon(Node<K, V> oldSon, Node<K, V> newSon) {
+		Node<K, V> parent = oldSon.parent;
+		newSon.parent = parent;
+		if (parent == null) this.root = newSon;
+		else if (parent.left == oldSon) parent.left = newSon;
+		else parent.right = newSon;
+	}
+
+	/**
+	 * private void update(Node<K, V> node)
+	 * <p>
+	 * Recomputes node's height and size from its sons.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void update(Node<K, V> node) {
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	private static int height(Node<?, ?> node) {
+		return node == null ? -1 : node.height;
+	}
+
+	private static int size(Node<?, ?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	// The in-order neighbours of node, by the parent pointers (null at the ends).
+	private static <K, V> Node<K, V> successor(Node<K, V> node) {
+		if (node.right != null) {
+			node = node.right;
+			while (node.left != null) node = node.left;
+			return node;
+		}
+		while (node.parent != null && node.parent.right == node) node = node.parent;
+		return node.parent;
+	}
+
+	private static <K, V> Node<K, V> predecessor(Node<K, V> node) {
+		if (node.left != null) {
+			node = node.left;
+			while (node.right != null) node = node.right;
+			return node;
+		}
+		while (node.parent != null && node.parent.left == node) node = node.parent;
+		return node.parent;
+	}
+
+	/**
+	 * public int rank(K k)
+	 * <p>
+	 * Returns the number of keys in the tree which are smaller than k.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int rank(K k) {
+		int rank = 0;
+		Node<K, V> node = this.root;
+		while (node != null) {
+			int comparison = this.comparator.compare(node.key, k);
+			if (comparison < 0) {
+				rank += size(node.left) + 1;
+				node = node.right;
+			}
+			else {
+				if (comparison == 0) return rank + size(node.left);
+				node = node.left;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * public K select(int i)
+	 * <p>
+	 * Returns the key with rank i, i.e. the (i+1)-th smallest key in the tree.
+	 * precondition: 0 <= i < size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public K select(int i) {
+		if (i < 0 || i >= size()) throw new IndexOutOfBoundsException("Rank " + i + " is out of bounds for size " + size());
+		Node<K, V> node = this.root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (i < leftSize) {
+				node = node.left;
+			}
+			else if (i == leftSize) {
+				return node.key;
+			}
+			else {
+				i -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * public V min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public V min() {
+		if (this.minNode == null) return null;
+		return this.minNode.value;
+	}
+
+	/**
+	 * public V max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public V max() {
+		if (this.maxNode == null) return null;
+		return this.maxNode.value;
+	}
+
+	/**
+	 * public Object[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public Object[] keysToArray() {
+		Object[] keys = new Object[size()];
+		recKeysToArray(this.root, keys, 0);
+		return keys;
+	}
+
+	private int recKeysToArray(Node<K, V> node, Object[] keys, int index) {
+		if (node == null) return index;
+		index = recKeysToArray(node.left, keys, index);
+		keys[index++] = node.key;
+		return recKeysToArray(node.right, keys, index);
+	}
+
+	/**
+	 * public Object[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public Object[] infoToArray() {
+		Object[] values = new Object[size()];
+		recInfoToArray(this.root, values, 0);
+		return values;
+	}
+
+	private int recInfoToArray(Node<K, V> node, Object[] values, int index) {
+		if (node == null) return index;
+		index = recInfoToArray(node.left, values, index);
+		values[index++] = node.value;
+		return recInfoToArray(node.right, values, index);
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * private static class Node<K, V>
+	 * <p>
+	 * A node of the tree, missing sons are null (height -1, size 0).
+	 * The item isn't final, deleting a binary node moves its successor's item into it.
+	 */
+	private static class Node<K, V> {
+		private K key;
+		private V value;
+		private Node<K, V> left;
+		private Node<K, V> right;
+		private Node<K, V> parent;
+		private int height;
+		private int size;
+
+		private Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+			this.height = 0;
+			this.size = 1;
+		}
+	}
+}
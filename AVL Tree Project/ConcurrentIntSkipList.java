@@ -0,0 +1,343 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ *
+ * ConcurrentIntSkipList
+ *
+ * A thread safe, lock-free map from integer keys to String infos with AVLTree's interface, for write-heavy
+ * concurrent workloads where a locked tree (or ShardedAVLTree) serializes the writers.
+ * A skip list in the style of Herlihy and Shavit: every node's forward references carry a mark bit,
+ * a delete marks the node's references from the top level down (the mark of level 0 is the linearization point),
+ * and any traversal which meets a marked node unlinks it with a compareAndSet.
+ * Searches never write and never retry. Traversals of several items (min, max, keysToArray, forEach)
+ * are weakly consistent: they see every item present during the whole traversal, and maybe some of the
+ * items added or deleted meanwhile.
+ *
+ */
+
+
+public class ConcurrentIntSkipList {
+
+	private static final int MAX_LEVEL = 32;
+
+	private final Node head = new Node(0, null, MAX_LEVEL); // Sentinel before all keys, its key is never compared.
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * Returns true if and only if the list is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public boolean empty() {
+		return size() == 0;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items. Under concurrent inserts and deletes it may briefly
+	 * lag behind operations which already returned.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * Returns the info of an item with key k if it exists, otherwise returns null.
+	 * Wait-free: skips marked nodes instead of unlinking them.
+	 * Complexity: O(log n) expected
+	 * </p>
+	 */
+	public String search(int k) {
+		boolean[] marked = {false};
+		Node pred = this.head;
+		Node curr = null;
+		for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+			curr = pred.next[level].getReference();
+			while (curr != null) {
+				Node succ = curr.next[level].get(marked);
+				if (marked[0]) { // curr is deleted.
+					curr = succ;
+				}
+				else if (curr.key < k) {
+					pred = curr;
+					curr = succ;
+				}
+				else {
+					break;
+				}
+			}
+		}
+		return curr != null && curr.key == k ? curr.value : null;
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * Inserts an item with key k and info i.
+	 * Returns 0 (a skip list does no re-balancing), or -1 if an item with key k already exists.
+	 * The item is inserted once it is linked at level 0, the higher levels are linked afterwards.
+	 * Complexity: O(log n) expected
+	 * </p>
+	 */
+	public int insert(int k, String i) {
+		int topLevel = randomLevel();
+		Node[] preds = new Node[MAX_LEVEL];
+		Node[] succs = new Node[MAX_LEVEL];
+		Node node;
+		while (true) {
+			if (find(k, preds, succs)) return -1;
+			node = new Node(k, i, topLevel);
+			for (int level = 0; level < topLevel; level++) {
+				node.next[level].set(succs[level], false);
+			}
+			if (preds[0].next[0].compareAndSet(succs[0], node, false, false)) break;
+		}
+		this.size.incrementAndGet();
+
+		boolean[] marked = {false};
+		for (int level = 1; level < topLevel; level++) {
+			while (true) {
+				Node next = node.next[level].get(marked);
+				if (marked[0]) return 0; // Already being deleted, don't link it any higher.
+				Node succ = succs[level];
+				if (next != succ && !node.next[level].compareAndSet(next, succ, false, false)) continue;
+				if (preds[level].next[level].compareAndSet(succ, node, false, false)) break;
+				if (!find(k, preds, succs) || succs[0] != node) return 0; // Deleted meanwhile.
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * Deletes an item with key k if it exists.
+	 * Returns 0, or -1 if an item with key k was not found (or another thread deleted it first).
+	 * Marks the node's references from the top level down, then unlinks it by a find.
+	 * Complexity: O(log n) expected
+	 * </p>
+	 */
+	public int delete(int k) {
+		Node[] preds = new Node[MAX_LEVEL];
+		Node[] succs = new Node[MAX_LEVEL];
+		if (!find(k, preds, succs)) return -1;
+		Node victim = succs[0];
+		boolean[] marked = {false};
+		for (int level = victim.next.length - 1; level >= 1; level--) {
+			Node succ = victim.next[level].get(marked);
+			while (!marked[0]) {
+				victim.next[level].compareAndSet(succ, succ, false, true);
+				succ = victim.next[level].get(marked);
+			}
+		}
+		Node succ = victim.next[0].get(marked);
+		while (true) {
+			boolean markedByThis = victim.next[0].compareAndSet(succ, succ, false, true);
+			succ = victim.next[0].get(marked);
+			if (markedByThis) {
+				this.size.decrementAndGet();
+				find(k, preds, succs); // Unlinks the node from all levels.
+				return 0;
+			}
+			if (marked[0]) return -1; // Deleted by another thread.
+		}
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key, or null if the list is empty.
+	 * Complexity: O(1) expected
+	 * </p>
+	 */
+	public String min() {
+		Node node = firstNode();
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key, or null if the list is empty.
+	 * Descends from the top level, moving right as far as possible on each level.
+	 * Complexity: O(log n) expected
+	 * </p>
+	 */
+	public String max() {
+		boolean[] marked = {false};
+		Node pred = this.head;
+		for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+			Node curr = pred.next[level].getReference();
+			while (curr != null) {
+				Node succ = curr.next[level].get(marked);
+				if (!marked[0]) pred = curr;
+				curr = succ;
+			}
+		}
+		return pred == this.head ? null : pred.value;
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array of all keys (weakly consistent, see the class comment).
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public int[] keysToArray() {
+		int[] keys = new int[Math.max(16, size())];
+		int count = 0;
+		for (Node node = firstNode(); node != null; node = nextNode(node)) {
+			if (count == keys.length) keys = Arrays.copyOf(keys, 2 * count);
+			keys[count++] = node.key;
+		}
+		return Arrays.copyOf(keys, count);
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array of all infos, sorted by their respective keys (weakly consistent).
+	 * Under concurrent changes it may not match a separate keysToArray call, use forEach for pairs.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public String[] infoToArray() {
+		String[] values = new String[Math.max(16, size())];
+		int count = 0;
+		for (Node node = firstNode(); node != null; node = nextNode(node)) {
+			if (count == values.length) values = Arrays.copyOf(values, 2 * count);
+			values[count++] = node.value;
+		}
+		return Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * public void forEach(EntryVisitor visitor)
+	 * <p>
+	 * Visits all items in key order (weakly consistent). The visitor may modify the list.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public void forEach(EntryVisitor visitor) {
+		for (Node node = firstNode(); node != null; node = nextNode(node)) {
+			visitor.visit(node.key, node.value);
+		}
+	}
+
+	/**
+	 * public void forEachInRange(int lo, int hi, EntryVisitor visitor)
+	 * <p>
+	 * Visits the items with lo <= key <= hi in key order (weakly consistent). The visitor may modify the list.
+	 * Complexity: O(log n + k) expected for k visited items
+	 * </p>
+	 */
+	public void forEachInRange(int lo, int hi, EntryVisitor visitor) {
+		if (lo > hi) return;
+		Node[] preds = new Node[MAX_LEVEL];
+		Node[] succs = new Node[MAX_LEVEL];
+		find(lo, preds, succs);
+		for (Node node = succs[0]; node != null && node.key <= hi; node = nextNode(node)) {
+			if (!node.next[0].isMarked()) visitor.visit(node.key, node.value);
+		}
+	}
+
+	/**
+	 * private boolean find(int k, Node[] preds, Node[] succs)
+	 * <p>
+	 * Fills preds[level] and succs[level] with the last node before k and the first node from k on, at each level,
+	 * unlinking the marked nodes on the way (and restarting from the head if such an unlink fails).
+	 * Returns true if succs[0] has key k.
+	 * Complexity: O(log n) expected
+	 * </p>
+	 */
+	private boolean find(int k, Node[] preds, Node[] succs) {
+		boolean[] marked = {false};
+		retry:
+		while (true) {
+			Node pred = this.head;
+			for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+				Node curr = pred.next[level].getReference();
+				while (curr != null) {
+					Node succ = curr.next[level].get(marked);
+					if (marked[0]) { // curr is deleted, unlink it at this level.
+						if (!pred.next[level].compareAndSet(curr, succ, false, false)) continue retry;
+						curr = succ;
+					}
+					else if (curr.key < k) {
+						pred = curr;
+						curr = succ;
+					}
+					else {
+						break;
+					}
+				}
+				preds[level] = pred;
+				succs[level] = curr;
+			}
+			return succs[0] != null && succs[0].key == k;
+		}
+	}
+
+	// The first and next unmarked nodes at level 0 (null at the end).
+	private Node firstNode() {
+		return unmarkedFrom(this.head.next[0].getReference());
+	}
+
+	private Node nextNode(Node node) {
+		return unmarkedFrom(node.next[0].getReference());
+	}
+
+	private static Node unmarkedFrom(Node node) {
+		while (node != null && node.next[0].isMarked()) {
+			node = node.next[0].getReference();
+		}
+		return node;
+	}
+
+	/**
+	 * private static int randomLevel()
+	 * <p>
+	 * Returns the number of levels of a new node: level l + 1 with probability 2^-l (geometric, p = 1/2).
+	 * </p>
+	 */
+	private static int randomLevel() {
+		int trailingOnes = Integer.numberOfTrailingZeros(~ThreadLocalRandom.current().nextInt());
+		return Math.min(MAX_LEVEL, trailingOnes + 1);
+	}
+
+	/**
+	 * public interface EntryVisitor
+	 * <p>
+	 * Receives the items of forEach and forEachInRange.
+	 */
+	public interface EntryVisitor {
+		public void visit(int key, String info);
+	}
+
+	private static final class Node {
+		private final int key;
+		private final String value;
+		private final AtomicMarkableReference<Node>[] next; // The mark of next[level]: this node is deleted at that level.
+
+		@SuppressWarnings("unchecked")
+		private Node(int key, String value, int levels) {
+			this.key = key;
+			this.value = value;
+			this.next = (AtomicMarkableReference<Node>[]) new AtomicMarkableReference<?>[levels];
+			for (int level = 0; level < levels; level++) {
+				this.next[level] = new AtomicMarkableReference<Node>(null, false);
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+import java.util.function.Function;
+
+/**
+ *
+ * GenericAVLTree
+ *
+ * An AVL Tree with distinct integer keys and values of any reference type V.
+ * Values are stored as is (no String conversion), the balancing code is shared with AVLTree.
+ * The String based AVLTree methods keep working: an info is String.valueOf(value),
+ * and insert, compute and setValue turn infos into values with the parser given to the constructor.
+ *
+ */
+
+
+public class GenericAVLTree<V> extends AVLTree {
+
+	private final Function<String, V> parser;
+
+	/**
+	 * public GenericAVLTree(Function<String, V> parser)
+	 * <p>
+	 * Creates an empty tree whose String infos are turned into values by parser
+	 * (which may throw for infos that are not a valid value).
+	 * </p>
+	 */
+	public GenericAVLTree(Function<String, V> parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * public int insertValue(int k, V v)
+	 * <p>
+	 * Inserts an item with key k and value v to the tree.
+	 * Returns the number of re-balancing operations, or -1 if an item with key k already exists in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insertValue(int k, V v) {
+		return insertNode(new GenericNode(k, v));
+	}
+
+	/**
+	 * protected AVLNode newNode(int k, String i)
+	 * <p>
+	 * Creates the node for key k with the value parsed from i (used by insert(int, String) and compute).
+	 * Complexity: O(1), plus the parser's cost
+	 * </p>
+	 */
+	@Override
+	protected AVLNode newNode(int k, String i) {
+		return new GenericNode(k, this.parser.apply(i));
+	}
+
+	/**
+	 * public V searchValue(int k)
+	 * <p>
+	 * Returns the value of an item with key k if it exists in the tree,
+	 * otherwise returns null.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	public V searchValue(int k) {
+		AVLNode node = searchNode(k);
+		if (node == null) return null;
+		return ((GenericNode) node).genericValue;
+	}
+
+	/**
+	 * public Object[] valuesToArray()
+	 * <p>
+	 * Returns an array which contains all values in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public Object[] valuesToArray() {
+		Object[] values = new Object[size()];
+		if (!empty()) fillValues(getRoot(), values, 0);
+		return values;
+	}
+
+	/**
+	 * private int fillValues(IAVLNode node, Object[] values, int index)
+	 * <p>
+	 * Writes the values of node's subtree in order from index on, returns the index after the subtree.
+	 * Recurses on left sons only, right sons are iterated.
+	 * Complexity: O(size of node's subtree)
+	 * </p>
+	 */
+	@SuppressWarnings("unchecked")
+	private int fillValues(IAVLNode node, Object[] values, int index) {
+		while (node.isRealNode()) {
+			index = fillValues(node.getLeft(), values, index);
+			values[index++] = ((GenericNode) node).genericValue;
+			node = node.getRight();
+		}
+		return index;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected AVLNode copyNode(AVLNode node) {
+		return new GenericNode(node.getKey(), ((GenericNode) node).genericValue);
+	}
+
+	@Override
+	protected AVLTree newTree() {
+		return new GenericAVLTree<V>(this.parser);
+	}
+
+	/**
+	 * public class GenericNode
+	 * <p>
+	 * An AVL node with a value of type V.
+	 * getValue returns String.valueOf(value), built on each call.
+	 */
+	public class GenericNode extends AVLNode {
+		private V genericValue;
+
+		public GenericNode(int key, V value) {
+			super(key, null);
+			this.genericValue = value;
+		}
+
+		public V getGenericValue() {
+			return this.genericValue;
+		}
+
+		// Sets the value parsed from value by the tree's parser.
+		@Override
+		public void setValue(String value) {
+			this.genericValue = GenericAVLTree.this.parser.apply(value);
+		}
+
+		@Override
+		public String getValue() {
+			if (this.genericValue == null) return null;
+			return String.valueOf(this.genericValue);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ *
+ * HotKeyCache
+ *
+ * A small, fixed size cache from int keys to the nodes of an AVLTree, put in front of AVLTree.search
+ * (see AVLTree.setFrontCache) so frequently searched keys skip the descent.
+ * Set-associative: a key can only be in one set of 8 slots (its keys fit in one cache line),
+ * and each set evicts by CLOCK, which approximates LRU with one reference bit per slot.
+ * New entries start unreferenced, so keys searched once are evicted before the ones searched again.
+ *
+ */
+
+
+public final class HotKeyCache {
+
+	private static final int WAYS = 8;
+
+	private final int[] keys;
+	private final AVLTree.AVLNode[] nodes; // nodes[i] == null marks an empty slot.
+	private final boolean[] referenced;
+	private final byte[] hands; // The CLOCK hand of each set.
+	private final int setMask;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * public HotKeyCache(int capacity)
+	 * <p>
+	 * Creates an empty cache of at least capacity slots (rounded up to a power of 2 number of sets).
+	 * </p>
+	 */
+	public HotKeyCache(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+		int sets = 1;
+		while (sets * WAYS < capacity) {
+			sets <<= 1;
+		}
+		this.keys = new int[sets * WAYS];
+		this.nodes = new AVLTree.AVLNode[sets * WAYS];
+		this.referenced = new boolean[sets * WAYS];
+		this.hands = new byte[sets];
+		this.setMask = sets - 1;
+	}
+
+	/**
+	 * public AVLTree.AVLNode get(int key)
+	 * <p>
+	 * Returns the cached node of key and marks it referenced, or null (a miss) if key is not cached.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public AVLTree.AVLNode get(int key) {
+		int base = setOf(key) * WAYS;
+		for (int slot = base; slot < base + WAYS; slot++) {
+			if (this.keys[slot] == key && this.nodes[slot] != null) {
+				this.referenced[slot] = true;
+				this.hits++;
+				return this.nodes[slot];
+			}
+		}
+		this.misses++;
+		return null;
+	}
+
+	/**
+	 * public void put(int key, AVLTree.AVLNode node)
+	 * <p>
+	 * Caches node as the node of key. If key's set is full, the CLOCK hand sweeps the set,
+	 * clearing reference bits, and evicts the first unreferenced entry.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public void put(int key, AVLTree.AVLNode node) {
+		int set = setOf(key);
+		int base = set * WAYS;
+		int free = -1;
+		for (int slot = base; slot < base + WAYS; slot++) {
+			if (this.nodes[slot] == null) {
+				if (free < 0) free = slot;
+			}
+			else if (this.keys[slot] == key) {
+				this.nodes[slot] = node;
+				return;
+			}
+		}
+		if (free < 0) {
+			int hand = this.hands[set];
+			while (this.referenced[base + hand]) { // At most one round, the bits are cleared on the way.
+				this.referenced[base + hand] = false;
+				hand = (hand + 1) & (WAYS - 1);
+			}
+			free = base + hand;
+			this.hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+			this.evictions++;
+		}
+		this.keys[free] = key;
+		this.nodes[free] = node;
+		this.referenced[free] = false;
+	}
+
+	/**
+	 * public void remove(int key)
+	 * <p>
+	 * Drops key from the cache, if it is there.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public void remove(int key) {
+		int base = setOf(key) * WAYS;
+		for (int slot = base; slot < base + WAYS; slot++) {
+			if (this.keys[slot] == key && this.nodes[slot] != null) {
+				this.nodes[slot] = null;
+				this.referenced[slot] = false;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * public void clear()
+	 * <p>
+	 * Drops all entries (the statistics are kept).
+	 * Complexity: O(capacity)
+	 * </p>
+	 */
+	public void clear() {
+		Arrays.fill(this.nodes, null);
+		Arrays.fill(this.referenced, false);
+	}
+
+	// Statistics, since the cache was created or resetStatistics was called.
+	public long hits() {
+		return this.hits;
+	}
+
+	public long misses() {
+		return this.misses;
+	}
+
+	public long evictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * public double hitRate()
+	 * <p>
+	 * Returns hits / (hits + misses), or 0 if there were no lookups.
+	 * </p>
+	 */
+	public double hitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0 : (double) this.hits / lookups;
+	}
+
+	public void resetStatistics() {
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	public int capacity() {
+		return this.nodes.length;
+	}
+
+	// Same Fibonacci hashing as NodeHashIndex.
+	private int setOf(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & this.setMask;
+	}
+}
@@ -0,0 +1,209 @@
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *
+ * IndexedAVLList
+ *
+ * A list of Strings backed by an AVL tree ordered by position instead of key (an implicit-key tree, as in a rope).
+ * An item's index is its rank, found from the size fields, so get, set, insert and remove at any index
+ * cost O(log n) instead of ArrayList's O(n) shift, and two lists concatenate or split in O(log n) by join and split.
+ * The nodes' keys are unused (0), only positional tree operations are applied to the tree.
+ *
+ */
+
+
+public class IndexedAVLList extends AbstractList<String> {
+
+	private AVLTree tree;
+
+	public IndexedAVLList() {
+		this(new AVLTree());
+	}
+
+	private IndexedAVLList(AVLTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items in the list.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	@Override
+	public int size() {
+		return this.tree.size();
+	}
+
+	/**
+	 * public String get(int i)
+	 * <p>
+	 * Returns the item at index i.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	@Override
+	public String get(int i) {
+		return this.tree.selectNode(i).getValue();
+	}
+
+	/**
+	 * public String set(int i, String item)
+	 * <p>
+	 * Replaces the item at index i, and returns the previous item.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	@Override
+	public String set(int i, String item) {
+		AVLTree.AVLNode node = this.tree.selectNode(i);
+		String previousItem = node.getValue();
+		this.tree.updateValue(node, item); // Through the tree, so its cached arrays and aggregates see the change.
+		return previousItem;
+	}
+
+	/**
+	 * public void insertAt(int i, String item)
+	 * <p>
+	 * Inserts item at index i, shifting the items from index i on by one.
+	 * The new node becomes the left son of the current i-th node, or the right son of its predecessor.
+	 * precondition: 0 <= i <= size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public void insertAt(int i, String item) {
+		int size = this.tree.size();
+		if (i < 0 || i > size) throw new IndexOutOfBoundsException("Index " + i + " is out of range for size " + size);
+		AVLTree.AVLNode newNode = this.tree.newNode(0, item);
+		if (i == size) { // Append after the last item.
+			this.tree.linkNodeAt(newNode, size == 0 ? null : this.tree.selectNode(size - 1), true);
+		}
+		else {
+			AVLTree.AVLNode next = this.tree.selectNode(i);
+			if (!next.getLeft().isRealNode()) {
+				this.tree.linkNodeAt(newNode, next, false);
+			}
+			else {
+				this.tree.linkNodeAt(newNode, (AVLTree.AVLNode) this.tree.predecessorNode(next), true);
+			}
+		}
+		this.modCount++;
+	}
+
+	/**
+	 * public String removeAt(int i)
+	 * <p>
+	 * Removes the item at index i, shifting the following items back by one, and returns it.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public String removeAt(int i) {
+		AVLTree.AVLNode node = this.tree.selectNode(i);
+		String item = node.getValue();
+		this.tree.deleteNode(node);
+		this.modCount++;
+		return item;
+	}
+
+	@Override
+	public void add(int i, String item) {
+		insertAt(i, item);
+	}
+
+	@Override
+	public String remove(int i) {
+		return removeAt(i);
+	}
+
+	@Override
+	public void clear() {
+		this.tree = new AVLTree();
+		this.modCount++;
+	}
+
+	/**
+	 * public void concat(IndexedAVLList other)
+	 * <p>
+	 * Appends all items of other to this list, and leaves other empty.
+	 * other's first node serves as the join node.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public void concat(IndexedAVLList other) {
+		if (other == this) throw new IllegalArgumentException("Can't concatenate a list with itself");
+		if (other.isEmpty()) return;
+		AVLTree.AVLNode joinNode = other.tree.selectNode(0);
+		other.tree.deleteNode(joinNode);
+		this.tree.joinOrdered(joinNode, other.tree, true);
+		other.tree = new AVLTree();
+		this.modCount++;
+		other.modCount++;
+	}
+
+	/**
+	 * public IndexedAVLList splitAt(int i)
+	 * <p>
+	 * Removes the items from index i on, and returns them as a new list (this list keeps the first i items).
+	 * precondition: 0 <= i <= size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public IndexedAVLList splitAt(int i) {
+		int size = this.tree.size();
+		if (i < 0 || i > size) throw new IndexOutOfBoundsException("Index " + i + " is out of range for size " + size);
+		IndexedAVLList tail;
+		if (i == size) {
+			tail = new IndexedAVLList();
+		}
+		else if (i == 0) {
+			tail = new IndexedAVLList(this.tree);
+			this.tree = new AVLTree();
+		}
+		else {
+			AVLTree[] parts = this.tree.splitBeforeNode(this.tree.selectNode(i)); // The i-th node leads the tail.
+			this.tree = parts[0];
+			tail = new IndexedAVLList(parts[1]);
+		}
+		this.modCount++;
+		return tail;
+	}
+
+	/**
+	 * public Iterator<String> iterator()
+	 * <p>
+	 * Walks the items in order by successor pointers, O(1) amortized per item (instead of a select per index).
+	 * </p>
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private AVLTree.IAVLNode next = isEmpty() ? null : IndexedAVLList.this.tree.selectNode(0);
+			private AVLTree.IAVLNode lastReturned;
+			private int expectedModCount = IndexedAVLList.this.modCount;
+
+			public boolean hasNext() {
+				return this.next != null;
+			}
+
+			public String next() {
+				if (IndexedAVLList.this.modCount != this.expectedModCount) throw new ConcurrentModificationException();
+				if (this.next == null) throw new NoSuchElementException();
+				this.lastReturned = this.next;
+				this.next = IndexedAVLList.this.tree.successorNode(this.next);
+				return this.lastReturned.getValue();
+			}
+
+			public void remove() {
+				if (this.lastReturned == null) throw new IllegalStateException();
+				if (IndexedAVLList.this.modCount != this.expectedModCount) throw new ConcurrentModificationException();
+				IndexedAVLList.this.tree.deleteNode((AVLTree.AVLNode) this.lastReturned);
+				this.lastReturned = null;
+				this.expectedModCount = ++IndexedAVLList.this.modCount;
+			}
+		};
+	}
+}
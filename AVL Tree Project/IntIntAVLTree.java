@@ -0,0 +1,98 @@
+/**
+ *
+ * IntIntAVLTree
+ *
+ * An AVL Tree with distinct integer keys and primitive int values.
+ * Values are stored unboxed in the nodes (see PrimitiveValueAVLTree), an info is the decimal form of a value.
+ *
+ */
+
+
+public class IntIntAVLTree extends PrimitiveValueAVLTree {
+
+	/**
+	 * public int insertValue(int k, int v)
+	 * <p>
+	 * Inserts an item with key k and value v to the tree.
+	 * Returns the number of re-balancing operations, or -1 if an item with key k already exists in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insertValue(int k, int v) {
+		return insertNode(new IntIntNode(k, v));
+	}
+
+	/**
+	 * public int searchValue(int k, int missingValue)
+	 * <p>
+	 * Returns the value of an item with key k if it exists in the tree,
+	 * otherwise returns missingValue.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int searchValue(int k, int missingValue) {
+		return (int) searchPrimitive(k, missingValue);
+	}
+
+	/**
+	 * public int[] valuesToArray()
+	 * <p>
+	 * Returns an array which contains all values in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public int[] valuesToArray() {
+		int[] values = new int[size()];
+		if (!empty()) fillValues(getRoot(), values, 0);
+		return values;
+	}
+
+	/**
+	 * private static int fillValues(IAVLNode node, int[] values, int index)
+	 * <p>
+	 * Writes the values of node's subtree in order from index on, returns the index after the subtree.
+	 * Recurses on left sons only, right sons are iterated.
+	 * Complexity: O(size of node's subtree)
+	 * </p>
+	 */
+	private static int fillValues(IAVLNode node, int[] values, int index) {
+		while (node.isRealNode()) {
+			index = fillValues(node.getLeft(), values, index);
+			values[index++] = ((IntIntNode) node).getIntValue();
+			node = node.getRight();
+		}
+		return index;
+	}
+
+	@Override
+	protected long parseValue(String i) {
+		return Integer.parseInt(i);
+	}
+
+	@Override
+	protected PrimitiveNode newPrimitiveNode(int k, long v) {
+		return new IntIntNode(k, (int) v);
+	}
+
+	@Override
+	protected AVLTree newTree() {
+		return new IntIntAVLTree();
+	}
+
+	/**
+	 * public class IntIntNode
+	 * <p>
+	 * An AVL node with a primitive int value.
+	 */
+	public class IntIntNode extends PrimitiveNode {
+		public IntIntNode(int key, int value) {
+			super(key, value);
+		}
+
+		public int getIntValue() {
+			return (int) primitiveValue();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ * IntLongAVLTree
+ *
+ * An AVL Tree with distinct integer keys and primitive long values.
+ * Values are stored unboxed in the nodes (see PrimitiveValueAVLTree), an info is the decimal form of a value.
+ *
+ */
+
+
+public class IntLongAVLTree extends PrimitiveValueAVLTree {
+
+	/**
+	 * public int insertValue(int k, long v)
+	 * <p>
+	 * Inserts an item with key k and value v to the tree.
+	 * Returns the number of re-balancing operations, or -1 if an item with key k already exists in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insertValue(int k, long v) {
+		return insertNode(new IntLongNode(k, v));
+	}
+
+	/**
+	 * public long searchValue(int k, long missingValue)
+	 * <p>
+	 * Returns the value of an item with key k if it exists in the tree,
+	 * otherwise returns missingValue.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public long searchValue(int k, long missingValue) {
+		return searchPrimitive(k, missingValue);
+	}
+
+	/**
+	 * public long[] valuesToArray()
+	 * <p>
+	 * Returns an array which contains all values in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public long[] valuesToArray() {
+		long[] values = new long[size()];
+		if (!empty()) fillValues(getRoot(), values, 0);
+		return values;
+	}
+
+	/**
+	 * private static int fillValues(IAVLNode node, long[] values, int index)
+	 * <p>
+	 * Writes the values of node's subtree in order from index on, returns the index after the subtree.
+	 * Recurses on left sons only, right sons are iterated.
+	 * Complexity: O(size of node's subtree)
+	 * </p>
+	 */
+	private static int fillValues(IAVLNode node, long[] values, int index) {
+		while (node.isRealNode()) {
+			index = fillValues(node.getLeft(), values, index);
+			values[index++] = ((IntLongNode) node).getLongValue();
+			node = node.getRight();
+		}
+		return index;
+	}
+
+	@Override
+	protected long parseValue(String i) {
+		return Long.parseLong(i);
+	}
+
+	@Override
+	protected PrimitiveNode newPrimitiveNode(int k, long v) {
+		return new IntLongNode(k, v);
+	}
+
+	@Override
+	protected AVLTree newTree() {
+		return new IntLongAVLTree();
+	}
+
+	/**
+	 * public class IntLongNode
+	 * <p>
+	 * An AVL node with a primitive long value.
+	 */
+	public class IntLongNode extends PrimitiveNode {
+		public IntLongNode(int key, long value) {
+			super(key, value);
+		}
+
+		public long getLongValue() {
+			return primitiveValue();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * IntervalAVLTree
+ *
+ * An interval tree over AVLTree: every item is a closed interval [start, end] keyed by its start,
+ * with distinct starts. Each node keeps the maximal end of its subtree as the tree's aggregate,
+ * so it is maintained by the same rotation, rebalance, split and join paths as the size field.
+ *
+ */
+
+
+public class IntervalAVLTree extends AVLTree {
+
+	// Maximal interval end of a subtree.
+	private static final Aggregate MAX_END = new Aggregate() {
+		public long identity() {
+			return Long.MIN_VALUE;
+		}
+
+		public long lift(IAVLNode node) {
+			return ((IntervalNode) node).end;
+		}
+
+		public long combine(long left, long right) {
+			return Math.max(left, right);
+		}
+	};
+
+	public IntervalAVLTree() {
+		super.setAggregate(MAX_END);
+	}
+
+	/**
+	 * public int insert(int start, int end, String i)
+	 * <p>
+	 * Inserts the interval [start, end] with info i to the tree.
+	 * Returns the number of re-balancing operations, or -1 if an interval with the same start already exists.
+	 * precondition: start <= end
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insert(int start, int end, String i) {
+		if (end < start) throw new IllegalArgumentException("Interval end " + end + " is smaller than its start " + start);
+		return insertNode(new IntervalNode(start, end, i));
+	}
+
+	/**
+	 * protected AVLNode newNode(int k, String i)
+	 * <p>
+	 * Creates the single point interval [k, k] with info i (used by insert(int, String) and compute).
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	@Override
+	protected AVLNode newNode(int k, String i) {
+		return new IntervalNode(k, k, i);
+	}
+
+	/**
+	 * public void setAggregate(Aggregate aggregate)
+	 * <p>
+	 * Not supported, the aggregate of an interval tree is the maximal end of each subtree.
+	 * </p>
+	 */
+	@Override
+	public void setAggregate(Aggregate aggregate) {
+		throw new UnsupportedOperationException("IntervalAVLTree keeps the maximal interval end as its aggregate");
+	}
+
+	/**
+	 * public IntervalNode[] overlapping(int lo, int hi)
+	 * <p>
+	 * Returns all intervals which intersect [lo, hi] (start <= hi and end >= lo), sorted by their start.
+	 * Subtrees whose maximal end is below lo, and right subtrees of starts above hi, are never visited.
+	 * Complexity: O(log n) if there are no such intervals, O(min(n, k log n)) for k reported intervals.
+	 * </p>
+	 */
+	public IntervalNode[] overlapping(int lo, int hi) {
+		List<IntervalNode> result = new ArrayList<IntervalNode>();
+		if (!empty() && lo <= hi) recOverlapping(getRoot(), lo, hi, result);
+		return result.toArray(new IntervalNode[0]);
+	}
+
+	/**
+	 * private void recOverlapping(IAVLNode node, int lo, int hi, List<IntervalNode> result)
+	 * <p>
+	 * Adds the intervals of node's subtree which intersect [lo, hi] to result, in order.
+	 * Supports overlapping method.
+	 * </p>
+	 */
+	private void recOverlapping(IAVLNode node, int lo, int hi, List<IntervalNode> result) {
+		if (!node.isRealNode() || subtreeAggregate(node) < lo) return; // No interval of the subtree reaches lo.
+		recOverlapping(node.getLeft(), lo, hi, result);
+		if (node.getKey() > hi) return; // Node and its right subtree start after hi.
+		if (((IntervalNode) node).end >= lo) result.add((IntervalNode) node);
+		recOverlapping(node.getRight(), lo, hi, result);
+	}
+
+	/**
+	 * public IntervalNode[] stab(int point)
+	 * <p>
+	 * Returns all intervals which contain point, sorted by their start.
+	 * Complexity: same as overlapping.
+	 * </p>
+	 */
+	public IntervalNode[] stab(int point) {
+		return overlapping(point, point);
+	}
+
+	@Override
+	protected AVLNode copyNode(AVLNode node) {
+		return new IntervalNode(node.getKey(), ((IntervalNode) node).end, node.getValue());
+	}
+
+	@Override
+	protected AVLTree newTree() {
+		return new IntervalAVLTree();
+	}
+
+	// A frozen interval tree keeps only the starts and infos, so it thaws into a plain AVLTree.
+	@Override
+	protected AVLTree thawTree() {
+		return new AVLTree();
+	}
+
+	/**
+	 * public class IntervalNode
+	 * <p>
+	 * An AVL node which holds the interval [getKey(), getEnd()].
+	 */
+	public class IntervalNode extends AVLNode {
+		private final int end;
+
+		public IntervalNode(int start, int end, String value) {
+			super(start, value);
+			this.end = end;
+		}
+
+		public int getStart() {
+			return getKey();
+		}
+
+		public int getEnd() {
+			return this.end;
+		}
+	}
+}
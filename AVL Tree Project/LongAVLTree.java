@@ -0,0 +1,459 @@
+/**
+ *
+ * LongAVLTree
+ *
+ * An implementation of an AVL Tree with
+ * distinct long keys and info.
+ * Every long value is a legal key (there is no key sentinel, empty sons are null).
+ * The nodes store primitive long keys, compared directly as in the int keyed AVLTree (no boxing,
+ * no comparator call); the algorithms are those of ComparatorAVLTree, which serves non-primitive key types:
+ * parent pointers and subtree sizes, single-descent insert and delete with AVLTree's rebalance counts, rank/select.
+ * Kept as a separate class so the int keyed AVLTree stays monomorphic.
+ *
+ */
+
+
+public class LongAVLTree {
+
+	private LongAVLNode root;
+	private LongAVLNode minNode;
+	private LongAVLNode maxNode;
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * Returns true if and only if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public boolean empty() {
+		return this.root == null;
+	}
+
+	/**
+	 * public String search(long k)
+	 * <p>
+	 * Returns the info of an item with key k if it exists in the tree.
+	 * otherwise, returns null.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public String search(long k) {
+		LongAVLNode node = findNode(k);
+		if (node == null) return null;
+		return node.value;
+	}
+
+	/**
+	 * public int insert(long k, String i)
+	 * <p>
+	 * Inserts an item with key k and info i to the AVL tree, with a single descent.
+	 * Returns the number of re-balancing operations, counted as in AVLTree.insert
+	 * (a promotion counts 1, a single rotation 2 and a double rotation 5),
+	 * or -1 if an item with key k already exists in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int insert(long k, String i) {
+		LongAVLNode parent = null;
+		LongAVLNode node = this.root;
+		while (node != null) {
+			long nodeKey = node.key;
+			if (nodeKey == k) return -1;
+			parent = node;
+			node = k < nodeKey ? node.left : node.right;
+		}
+		LongAVLNode newNode = new LongAVLNode(k, i);
+		newNode.parent = parent;
+		if (parent == null) {
+			this.root = newNode;
+			this.minNode = newNode;
+			this.maxNode = newNode;
+			return 0;
+		}
+		if (k < parent.key) {
+			parent.left = newNode;
+			if (this.minNode == parent) this.minNode = newNode;
+		}
+		else {
+			parent.right = newNode;
+			if (this.maxNode == parent) this.maxNode = newNode;
+		}
+		return insertRebalance(parent);
+	}
+
+	/**
+	 * private LongAVLNode findNode(long k)
+	 * <p>
+	 * Returns the node with key k, or null if there is no such node.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private LongAVLNode findNode(long k) {
+		LongAVLNode node = this.root;
+		while (node != null) {
+			long nodeKey = node.key;
+			if (nodeKey == k) return node;
+			node = nodeKey > k ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * private int insertRebalance(LongAVLNode node)
+	 * <p>
+	 * Walks up from node, the parent of a new leaf, promoting nodes until a node whose height didn't change
+	 * or a rotation, which restores the height of the subtree. Updates the sizes up to the root.
+	 * Returns the number of re-balancing operations (see insert).
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int insertRebalance(LongAVLNode node) {
+		int changeCounter = 0;
+		while (node != null) {
+			node.size++;
+			int balanceFactor = height(node.left) - height(node.right);
+			if (balanceFactor == 2 || balanceFactor == -2) {
+				changeCounter += rotate(node, balanceFactor) ? 5 : 2;
+				node = node.parent; // The rotation moved node down, its parent is the new subtree root.
+				break;
+			}
+			int newHeight = Math.max(height(node.left), height(node.right)) + 1;
+			if (newHeight == node.height) break;
+			node.height = newHeight; // Promote.
+			changeCounter++;
+			node = node.parent;
+		}
+		if (node != null) node = node.parent;
+		for (; node != null; node = node.parent) {
+			node.size++;
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * public int delete(long k)
+	 * <p>
+	 * Deletes an item with key k from the tree, if it is there, with a single descent.
+	 * Returns the number of re-balancing operations, counted as in AVLTree.delete
+	 * (a demotion counts 1, a single rotation 3 and a double rotation 6),
+	 * or -1 if an item with key k was not found in the tree.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int delete(long k) {
+		LongAVLNode node = findNode(k);
+		if (node == null) return -1;
+		if (node.left != null && node.right != null) { // Move the successor's item here, and unlink the successor.
+			LongAVLNode successor = node.right;
+			while (successor.left != null) successor = successor.left;
+			node.key = successor.key;
+			node.value = successor.value;
+			if (this.maxNode == successor) this.maxNode = node;
+			node = successor;
+		}
+		else {
+			if (this.minNode == node) this.minNode = successor(node);
+			if (this.maxNode == node) this.maxNode = predecessor(node);
+		}
+		LongAVLNode son = node.left != null ? node.left : node.right;
+		LongAVLNode parent = node.parent;
+		if (son != null) son.parent = parent;
+		if (parent == null) this.root = son;
+		else if (parent.left == node) parent.left = son;
+		else parent.right = son;
+		return deleteRebalance(parent);
+	}
+
+	/**
+	 * private int deleteRebalance(LongAVLNode node)
+	 * <p>
+	 * Walks up from node, the parent of an unlinked node, demoting and rotating until a node
+	 * whose height didn't change. Updates the sizes up to the root.
+	 * Returns the number of re-balancing operations (see delete).
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private int deleteRebalance(LongAVLNode node) {
+		int changeCounter = 0;
+		while (node != null) {
+			node.size--;
+			int balanceFactor = height(node.left) - height(node.right);
+			if (balanceFactor == 2 || balanceFactor == -2) {
+				changeCounter += rotate(node, balanceFactor) ? 6 : 3;
+				node = node.parent.parent; // Past the new subtree root, whose height may have dropped.
+				continue;
+			}
+			int newHeight = Math.max(height(node.left), height(node.right)) + 1;
+			if (newHeight == node.height) break;
+			node.height = newHeight; // Demote.
+			changeCounter++;
+			node = node.parent;
+		}
+		if (node != null) node = node.parent;
+		for (; node != null; node = node.parent) {
+			node.size--;
+		}
+		return changeCounter;
+	}
+
+	/**
+	 * private boolean rotate(LongAVLNode node, int balanceFactor)
+	 * <p>
+	 * Restores the AVL invariant at node, whose balance factor is 2 or -2, by a single or double rotation.
+	 * Returns true if a double rotation was needed.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private boolean rotate(LongAVLNode node, int balanceFactor) {
+		if (balanceFactor == 2) {
+			boolean isDouble = height(node.left.left) < height(node.left.right);
+			if (isDouble) leftRotation(node.left);
+			rightRotation(node);
+			return isDouble;
+		}
+		boolean isDouble = height(node.right.right) < height(node.right.left);
+		if (isDouble) rightRotation(node.right);
+		leftRotation(node);
+		return isDouble;
+	}
+
+	/**
+	 * private void leftRotation(LongAVLNode x)
+	 * <p>
+	 * Performs a left rotation on x as the pivot node, x.right takes its place.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void leftRotation(LongAVLNode x) {
+		LongAVLNode y = x.right;
+		x.right = y.left;
+		if (y.left != null) y.left.parent = x;
+		replaceSon(x, y);
+		y.left = x;
+		x.parent = y;
+		update(x);
+		update(y);
+	}
+
+	/**
+	 * private void rightRotation(LongAVLNode y)
+	 * <p>
+	 * Performs a right rotation on y as the pivot node, y.left takes its place.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void rightRotation(LongAVLNode y) {
+		LongAVLNode x = y.left;
+		y.left = x.right;
+		if (x.right != null) x.right.parent = y;
+		replaceSon(y, x);
+		x.right = y;
+		y.parent = x;
+		update(y);
+		update(x);
+	}
+
+	// Links newSon in oldSon's place under oldSon's parent (or as the root).
+	private void replaceSon(LongAVLNode oldSon, LongAVLNode newSon) {
+		LongAVLNode parent = oldSon.parent;
+		newSon.parent = parent;
+		if (parent == null) this.root = newSon;
+		else if (parent.left == oldSon) parent.left = newSon;
+		else parent.right = newSon;
+	}
+
+	/**
+	 * private void update(LongAVLNode node)
+	 * <p>
+	 * Recomputes node's height and size from its sons.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	private void update(LongAVLNode node) {
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	private static int height(LongAVLNode node) {
+		return node == null ? -1 : node.height;
+	}
+
+	private static int size(LongAVLNode node) {
+		return node == null ? 0 : node.size;
+	}
+
+	// The in-order neighbours of node, by the parent pointers (null at the ends).
+	private static LongAVLNode successor(LongAVLNode node) {
+		if (node.right != null) {
+			node = node.right;
+			while (node.left != null) node = node.left;
+			return node;
+		}
+		while (node.parent != null && node.parent.right == node) node = node.parent;
+		return node.parent;
+	}
+
+	private static LongAVLNode predecessor(LongAVLNode node) {
+		if (node.left != null) {
+			node = node.left;
+			while (node.right != null) node = node.right;
+			return node;
+		}
+		while (node.parent != null && node.parent.left == node) node = node.parent;
+		return node.parent;
+	}
+
+	/**
+	 * public int rank(long k)
+	 * <p>
+	 * Returns the number of keys in the tree which are smaller than k.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int rank(long k) {
+		int rank = 0;
+		LongAVLNode node = this.root;
+		while (node != null) {
+			long nodeKey = node.key;
+			if (nodeKey < k) {
+				rank += size(node.left) + 1;
+				node = node.right;
+			}
+			else {
+				if (nodeKey == k) return rank + size(node.left);
+				node = node.left;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * public long select(int i)
+	 * <p>
+	 * Returns the key with rank i, i.e. the (i+1)-th smallest key in the tree.
+	 * precondition: 0 <= i < size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public long select(int i) {
+		if (i < 0 || i >= size()) throw new IndexOutOfBoundsException("Rank " + i + " is out of bounds for size " + size());
+		LongAVLNode node = this.root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (i < leftSize) {
+				node = node.left;
+			}
+			else if (i == leftSize) {
+				return node.key;
+			}
+			else {
+				i -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public String min() {
+		if (this.minNode == null) return null;
+		return this.minNode.value;
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public String max() {
+		if (this.maxNode == null) return null;
+		return this.maxNode.value;
+	}
+
+	/**
+	 * public long[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public long[] keysToArray() {
+		long[] keys = new long[size()];
+		recKeysToArray(this.root, keys, 0);
+		return keys;
+	}
+
+	private int recKeysToArray(LongAVLNode node, long[] keys, int index) {
+		if (node == null) return index;
+		index = recKeysToArray(node.left, keys, index);
+		keys[index++] = node.key;
+		return recKeysToArray(node.right, keys, index);
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 * Complexity: O(n)
+	 * </p>
+	 */
+	public String[] infoToArray() {
+		String[] values = new String[size()];
+		recInfoToArray(this.root, values, 0);
+		return values;
+	}
+
+	private int recInfoToArray(LongAVLNode node, String[] values, int index) {
+		if (node == null) return index;
+		index = recInfoToArray(node.left, values, index);
+		values[index++] = node.value;
+		return recInfoToArray(node.right, values, index);
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * private static class LongAVLNode
+	 * <p>
+	 * A node of the tree, missing sons are null (height -1, size 0).
+	 * The item isn't final, deleting a binary node moves its successor's item into it.
+	 */
+	private static class LongAVLNode {
+		private long key;
+		private String value;
+		private LongAVLNode left;
+		private LongAVLNode right;
+		private LongAVLNode parent;
+		private int height;
+		private int size;
+
+		private LongAVLNode(long key, String value) {
+			this.key = key;
+			this.value = value;
+			this.height = 0;
+			this.size = 1;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ *
+ * MultiAVLTree
+ *
+ * A multimap over AVLTree: integer keys, each with one or more info values.
+ * All values of a key are kept in a growable array of a single node, and the node's weight
+ * (its number of values) is counted by the size field, so size(), rank and select count values,
+ * and keysToArray repeats a key once per value, next to its values in insertion order in infoToArray.
+ *
+ */
+
+
+public class MultiAVLTree extends AVLTree {
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * Adds the value i to key k (upsert): appends it if k exists, otherwise creates k. Uses a single descent.
+	 * Returns the number of re-balancing operations (0 when appending to an existing key).
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	@Override
+	public int insert(int k, String i) {
+		AVLNode node = findOrParent(k);
+		if (node != null && node.getKey() == k) {
+			((MultiNode) node).add(i);
+			weightChanged(node, 1);
+			recordChange(ChangeFeed.INSERT, k, i);
+			return 0;
+		}
+		return linkNode(new MultiNode(k, i), node);
+	}
+
+	/**
+	 * public String[] searchAll(int k)
+	 * <p>
+	 * Returns all values of key k in insertion order, or an empty array if k is not in the tree.
+	 * Complexity: O(log n + number of values of k)
+	 * </p>
+	 */
+	public String[] searchAll(int k) {
+		AVLNode node = searchNode(k);
+		if (node == null) return new String[0];
+		return ((MultiNode) node).toArray();
+	}
+
+	/**
+	 * public int count(int k)
+	 * <p>
+	 * Returns the number of values of key k.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	public int count(int k) {
+		AVLNode node = searchNode(k);
+		if (node == null) return 0;
+		return ((MultiNode) node).count;
+	}
+
+	/**
+	 * public boolean deleteValue(int k, String i)
+	 * <p>
+	 * Deletes one occurrence of the value i from key k, and deletes k when it has no values left.
+	 * Returns false if k doesn't have the value i.
+	 * Complexity: O(log n + number of values of k)
+	 * </p>
+	 */
+	public boolean deleteValue(int k, String i) {
+		AVLNode node = searchNode(k);
+		if (node == null) return false;
+		MultiNode multiNode = (MultiNode) node;
+		if (!multiNode.remove(i)) return false;
+		weightChanged(node, -1);
+		if (multiNode.count == 0) deleteNode(node); // Deletes a node of weight 0, the sizes are already updated.
+		else recordChange(ChangeFeed.DELETE, k, i);
+		return true;
+	}
+
+	@Override
+	protected AVLNode newNode(int k, String i) {
+		return new MultiNode(k, i);
+	}
+
+	@Override
+	protected AVLNode copyNode(AVLNode node) {
+		MultiNode source = (MultiNode) node;
+		MultiNode copy = new MultiNode(source.getKey(), null);
+		copy.values = source.toArray();
+		copy.count = source.count;
+		return copy;
+	}
+
+	@Override
+	protected AVLTree newTree() {
+		return new MultiAVLTree();
+	}
+
+	/**
+	 * public class MultiNode
+	 * <p>
+	 * An AVL node which holds all values of its key in a growable array.
+	 * getValue returns the first value.
+	 */
+	public class MultiNode extends AVLNode {
+		private String[] values;
+		private int count;
+
+		public MultiNode(int key, String value) {
+			super(key, null);
+			this.values = new String[] {value};
+			this.count = 1;
+		}
+
+		// Appends a value, doubling the array when it is full.
+		private void add(String value) {
+			if (this.count == this.values.length) {
+				String[] grownValues = new String[this.values.length * 2];
+				System.arraycopy(this.values, 0, grownValues, 0, this.count);
+				this.values = grownValues;
+			}
+			this.values[this.count++] = value;
+		}
+
+		// Removes the first occurrence of value, returns false if there is none.
+		private boolean remove(String value) {
+			for (int i = 0; i < this.count; i++) {
+				if (value == null ? this.values[i] == null : value.equals(this.values[i])) {
+					System.arraycopy(this.values, i + 1, this.values, i, this.count - i - 1);
+					this.values[--this.count] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private String[] toArray() {
+			String[] copy = new String[this.count];
+			System.arraycopy(this.values, 0, copy, 0, this.count);
+			return copy;
+		}
+
+		@Override
+		public String getValue() {
+			if (this.count == 0) return null;
+			return this.values[0];
+		}
+
+		// Sets the first value, the other values are kept (compute replaces all of them, see replaceValue).
+		@Override
+		public void setValue(String value) {
+			if (this.count > 0) this.values[0] = value;
+		}
+
+		@Override
+		protected String valueAt(int item) {
+			return this.values[item];
+		}
+
+		@Override
+		protected int replaceValue(String value) {
+			int delta = 1 - this.count;
+			this.values = new String[] {value};
+			this.count = 1;
+			return delta;
+		}
+
+		@Override
+		protected int weight() {
+			return this.count;
+		}
+	}
+}
@@ -0,0 +1,656 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Function;
+
+/**
+ *
+ * NavigableAVLMap
+ *
+ * A java.util.NavigableMap view of an AVLTree, for interoperability with code written against the collections API.
+ * A view may be bounded (headMap, tailMap, subMap) and/or descending; all views share the tree, so changes through
+ * any of them are seen by the others. Every navigation query is a single descent of the tree (floorNode, ceilingNode,
+ * higherNode, lowerNode), sizes of bounded views come from rank, and iteration walks successor pointers.
+ * Null keys and null values are not supported. Iterators are not fail-fast: the tree must not be changed while
+ * iterating, other than by the iterator's own remove.
+ *
+ */
+
+
+public class NavigableAVLMap extends AbstractMap<Integer, String> implements NavigableMap<Integer, String> {
+
+	private final AVLTree tree;
+
+	// Bounds of the view in ascending key order, whatever the direction of the view.
+	private final boolean fromStart;
+	private final int lo;
+	private final boolean loInclusive;
+	private final boolean toEnd;
+	private final int hi;
+	private final boolean hiInclusive;
+	private final boolean descending;
+
+	/**
+	 * public NavigableAVLMap(AVLTree tree)
+	 * <p>
+	 * Creates an unbounded, ascending view of tree.
+	 * </p>
+	 */
+	public NavigableAVLMap(AVLTree tree) {
+		this(tree, true, 0, true, true, 0, true, false);
+	}
+
+	private NavigableAVLMap(AVLTree tree, boolean fromStart, int lo, boolean loInclusive,
+			boolean toEnd, int hi, boolean hiInclusive, boolean descending) {
+		this.tree = tree;
+		this.fromStart = fromStart;
+		this.lo = lo;
+		this.loInclusive = loInclusive;
+		this.toEnd = toEnd;
+		this.hi = hi;
+		this.hiInclusive = hiInclusive;
+		this.descending = descending;
+	}
+
+	// ---------- Map methods ----------
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items in the view, counted by two rank queries when the view is bounded.
+	 * Complexity: O(1) unbounded, O(log n) bounded
+	 * </p>
+	 */
+	@Override
+	public int size() {
+		if (this.fromStart && this.toEnd) return this.tree.size();
+		int below = this.fromStart ? 0 : (this.loInclusive ? this.tree.rank(this.lo) : countUpTo(this.lo));
+		int upTo = this.toEnd ? this.tree.size() : (this.hiInclusive ? countUpTo(this.hi) : this.tree.rank(this.hi));
+		return Math.max(0, upTo - below);
+	}
+
+	// Number of items with a key <= k.
+	private int countUpTo(int k) {
+		return k == Integer.MAX_VALUE ? this.tree.size() : this.tree.rank(k + 1);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return firstNode() == null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return nodeOf(key) != null;
+	}
+
+	@Override
+	public String get(Object key) {
+		AVLTree.IAVLNode node = nodeOf(key);
+		return node == null ? null : node.getValue();
+	}
+
+	/**
+	 * public String put(Integer key, String value)
+	 * <p>
+	 * Sets the info of key (inserting it if needed) with a single descent, and returns the previous info.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	@Override
+	public String put(Integer key, final String value) {
+		if (value == null) throw new NullPointerException("NavigableAVLMap doesn't support null values");
+		if (!inRange(key)) throw new IllegalArgumentException("Key " + key + " is out of the view's range");
+		final String[] previousValue = new String[1];
+		this.tree.compute(key, new Function<String, String>() {
+			public String apply(String oldValue) {
+				previousValue[0] = oldValue;
+				return value;
+			}
+		});
+		return previousValue[0];
+	}
+
+	@Override
+	public String remove(Object key) {
+		AVLTree.IAVLNode node = nodeOf(key);
+		if (node == null) return null;
+		String value = node.getValue();
+		this.tree.delete(node.getKey());
+		return value;
+	}
+
+	/**
+	 * public void clear()
+	 * <p>
+	 * Deletes all items of the view from the tree, with a single deleteRange.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	@Override
+	public void clear() {
+		int from = this.fromStart ? Integer.MIN_VALUE : this.lo;
+		int to = this.toEnd ? Integer.MAX_VALUE : this.hi;
+		if (!this.fromStart && !this.loInclusive) {
+			if (this.lo == Integer.MAX_VALUE) return;
+			from = this.lo + 1;
+		}
+		if (!this.toEnd && !this.hiInclusive) {
+			if (this.hi == Integer.MIN_VALUE) return;
+			to = this.hi - 1;
+		}
+		this.tree.deleteRange(from, to);
+	}
+
+	@Override
+	public Set<Entry<Integer, String>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public NavigableSet<Integer> keySet() {
+		return navigableKeySet();
+	}
+
+	// ---------- SortedMap and NavigableMap methods ----------
+
+	@Override
+	public Comparator<? super Integer> comparator() {
+		return this.descending ? Collections.<Integer>reverseOrder() : null;
+	}
+
+	@Override
+	public Integer firstKey() {
+		return keyOrThrow(firstNode());
+	}
+
+	@Override
+	public Integer lastKey() {
+		return keyOrThrow(lastNode());
+	}
+
+	@Override
+	public Entry<Integer, String> firstEntry() {
+		return entry(firstNode());
+	}
+
+	@Override
+	public Entry<Integer, String> lastEntry() {
+		return entry(lastNode());
+	}
+
+	@Override
+	public Entry<Integer, String> pollFirstEntry() {
+		return poll(firstNode());
+	}
+
+	@Override
+	public Entry<Integer, String> pollLastEntry() {
+		return poll(lastNode());
+	}
+
+	@Override
+	public Entry<Integer, String> lowerEntry(Integer key) {
+		return entry(lowerNode(key));
+	}
+
+	@Override
+	public Integer lowerKey(Integer key) {
+		return key(lowerNode(key));
+	}
+
+	@Override
+	public Entry<Integer, String> floorEntry(Integer key) {
+		return entry(floorNode(key));
+	}
+
+	@Override
+	public Integer floorKey(Integer key) {
+		return key(floorNode(key));
+	}
+
+	@Override
+	public Entry<Integer, String> ceilingEntry(Integer key) {
+		return entry(ceilingNode(key));
+	}
+
+	@Override
+	public Integer ceilingKey(Integer key) {
+		return key(ceilingNode(key));
+	}
+
+	@Override
+	public Entry<Integer, String> higherEntry(Integer key) {
+		return entry(higherNode(key));
+	}
+
+	@Override
+	public Integer higherKey(Integer key) {
+		return key(higherNode(key));
+	}
+
+	@Override
+	public NavigableMap<Integer, String> descendingMap() {
+		return new NavigableAVLMap(this.tree, this.fromStart, this.lo, this.loInclusive,
+				this.toEnd, this.hi, this.hiInclusive, !this.descending);
+	}
+
+	@Override
+	public NavigableSet<Integer> navigableKeySet() {
+		return new KeySet(this);
+	}
+
+	@Override
+	public NavigableSet<Integer> descendingKeySet() {
+		return descendingMap().navigableKeySet();
+	}
+
+	/**
+	 * public NavigableMap<Integer, String> subMap(Integer fromKey, boolean fromInclusive, Integer toKey, boolean toInclusive)
+	 * <p>
+	 * Returns a view of the items from fromKey to toKey, in this view's direction.
+	 * Throws IllegalArgumentException if fromKey is after toKey, or a bound is out of this view's range.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	@Override
+	public NavigableMap<Integer, String> subMap(Integer fromKey, boolean fromInclusive, Integer toKey, boolean toInclusive) {
+		if (this.descending ? fromKey < toKey : fromKey > toKey) throw new IllegalArgumentException("fromKey " + fromKey + " is after toKey " + toKey);
+		if (this.descending) return subView(false, toKey, toInclusive, false, fromKey, fromInclusive);
+		return subView(false, fromKey, fromInclusive, false, toKey, toInclusive);
+	}
+
+	@Override
+	public NavigableMap<Integer, String> headMap(Integer toKey, boolean inclusive) {
+		if (this.descending) return subView(false, toKey, inclusive, this.toEnd, this.hi, this.hiInclusive);
+		return subView(this.fromStart, this.lo, this.loInclusive, false, toKey, inclusive);
+	}
+
+	@Override
+	public NavigableMap<Integer, String> tailMap(Integer fromKey, boolean inclusive) {
+		if (this.descending) return subView(this.fromStart, this.lo, this.loInclusive, false, fromKey, inclusive);
+		return subView(false, fromKey, inclusive, this.toEnd, this.hi, this.hiInclusive);
+	}
+
+	@Override
+	public SortedMap<Integer, String> subMap(Integer fromKey, Integer toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	@Override
+	public SortedMap<Integer, String> headMap(Integer toKey) {
+		return headMap(toKey, false);
+	}
+
+	@Override
+	public SortedMap<Integer, String> tailMap(Integer fromKey) {
+		return tailMap(fromKey, true);
+	}
+
+	// ---------- Range and direction helpers ----------
+
+	/**
+	 * private NavigableAVLMap subView(...)
+	 * <p>
+	 * Returns a view with the given ascending bounds and this view's direction,
+	 * after checking that every new bound lies in this view's range.
+	 * </p>
+	 */
+	private NavigableAVLMap subView(boolean newFromStart, int newLo, boolean newLoInclusive,
+			boolean newToEnd, int newHi, boolean newHiInclusive) {
+		boolean loChanged = newFromStart != this.fromStart || newLo != this.lo || newLoInclusive != this.loInclusive;
+		boolean hiChanged = newToEnd != this.toEnd || newHi != this.hi || newHiInclusive != this.hiInclusive;
+		if ((loChanged && !inRange(newLo, newLoInclusive)) || (hiChanged && !inRange(newHi, newHiInclusive))) {
+			throw new IllegalArgumentException("Bound is out of the view's range");
+		}
+		return new NavigableAVLMap(this.tree, newFromStart, newLo, newLoInclusive,
+				newToEnd, newHi, newHiInclusive, this.descending);
+	}
+
+	private boolean tooLow(int k) {
+		return !this.fromStart && (k < this.lo || (k == this.lo && !this.loInclusive));
+	}
+
+	private boolean tooHigh(int k) {
+		return !this.toEnd && (k > this.hi || (k == this.hi && !this.hiInclusive));
+	}
+
+	private boolean inRange(int k) {
+		return !tooLow(k) && !tooHigh(k);
+	}
+
+	// A bound may equal an exclusive bound of this view if it is exclusive itself.
+	private boolean inRange(int k, boolean inclusive) {
+		if (inclusive) return inRange(k);
+		return (this.fromStart || k >= this.lo) && (this.toEnd || k <= this.hi);
+	}
+
+	// Returns the tree node of key if it is in the view, otherwise null.
+	private AVLTree.IAVLNode nodeOf(Object key) {
+		if (!(key instanceof Integer) || !inRange((Integer) key)) return null;
+		return this.tree.searchNode((Integer) key);
+	}
+
+	// Nodes in ascending key order, limited to the view's range.
+
+	private AVLTree.IAVLNode absLowest() {
+		AVLTree.IAVLNode node;
+		if (this.fromStart) node = this.tree.ceilingNode(Integer.MIN_VALUE);
+		else node = this.loInclusive ? this.tree.ceilingNode(this.lo) : this.tree.higherNode(this.lo);
+		return node == null || tooHigh(node.getKey()) ? null : node;
+	}
+
+	private AVLTree.IAVLNode absHighest() {
+		AVLTree.IAVLNode node;
+		if (this.toEnd) node = this.tree.floorNode(Integer.MAX_VALUE);
+		else node = this.hiInclusive ? this.tree.floorNode(this.hi) : this.tree.lowerNode(this.hi);
+		return node == null || tooLow(node.getKey()) ? null : node;
+	}
+
+	private AVLTree.IAVLNode absCeiling(int k) {
+		if (tooLow(k)) return absLowest();
+		AVLTree.IAVLNode node = this.tree.ceilingNode(k);
+		return node == null || tooHigh(node.getKey()) ? null : node;
+	}
+
+	private AVLTree.IAVLNode absHigher(int k) {
+		if (tooLow(k)) return absLowest();
+		AVLTree.IAVLNode node = this.tree.higherNode(k);
+		return node == null || tooHigh(node.getKey()) ? null : node;
+	}
+
+	private AVLTree.IAVLNode absFloor(int k) {
+		if (tooHigh(k)) return absHighest();
+		AVLTree.IAVLNode node = this.tree.floorNode(k);
+		return node == null || tooLow(node.getKey()) ? null : node;
+	}
+
+	private AVLTree.IAVLNode absLower(int k) {
+		if (tooHigh(k)) return absHighest();
+		AVLTree.IAVLNode node = this.tree.lowerNode(k);
+		return node == null || tooLow(node.getKey()) ? null : node;
+	}
+
+	// Nodes in the view's direction.
+
+	private AVLTree.IAVLNode firstNode() {
+		return this.descending ? absHighest() : absLowest();
+	}
+
+	private AVLTree.IAVLNode lastNode() {
+		return this.descending ? absLowest() : absHighest();
+	}
+
+	private AVLTree.IAVLNode ceilingNode(int k) {
+		return this.descending ? absFloor(k) : absCeiling(k);
+	}
+
+	private AVLTree.IAVLNode floorNode(int k) {
+		return this.descending ? absCeiling(k) : absFloor(k);
+	}
+
+	private AVLTree.IAVLNode higherNode(int k) {
+		return this.descending ? absLower(k) : absHigher(k);
+	}
+
+	private AVLTree.IAVLNode lowerNode(int k) {
+		return this.descending ? absHigher(k) : absLower(k);
+	}
+
+	// The node after node in the view's direction, or null at the end of the view.
+	private AVLTree.IAVLNode nextNode(AVLTree.IAVLNode node) {
+		AVLTree.IAVLNode next = this.descending ? this.tree.predecessorNode(node) : this.tree.successorNode(node);
+		return next == null || !inRange(next.getKey()) ? null : next;
+	}
+
+	private Entry<Integer, String> poll(AVLTree.IAVLNode node) {
+		if (node == null) return null;
+		Entry<Integer, String> entry = entry(node);
+		this.tree.delete(node.getKey());
+		return entry;
+	}
+
+	private static Entry<Integer, String> entry(AVLTree.IAVLNode node) {
+		if (node == null) return null;
+		return new SimpleImmutableEntry<Integer, String>(node.getKey(), node.getValue());
+	}
+
+	private static Integer key(AVLTree.IAVLNode node) {
+		return node == null ? null : node.getKey();
+	}
+
+	private static Integer keyOrThrow(AVLTree.IAVLNode node) {
+		if (node == null) throw new NoSuchElementException();
+		return node.getKey();
+	}
+
+	// ---------- Iteration ----------
+
+	/**
+	 * private abstract class NodeIterator<T>
+	 * <p>
+	 * Walks the view's nodes by successor (or predecessor) pointers, O(1) amortized per step.
+	 * remove deletes the last returned key; the next node is kept as is, since deletion relinks nodes
+	 * and never moves items between them.
+	 */
+	private abstract class NodeIterator<T> implements Iterator<T> {
+		private AVLTree.IAVLNode next = firstNode();
+		private AVLTree.IAVLNode lastReturned;
+
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		public T next() {
+			if (this.next == null) throw new NoSuchElementException();
+			this.lastReturned = this.next;
+			this.next = nextNode(this.next);
+			return item(this.lastReturned);
+		}
+
+		public void remove() {
+			if (this.lastReturned == null) throw new IllegalStateException();
+			NavigableAVLMap.this.tree.delete(this.lastReturned.getKey());
+			this.lastReturned = null;
+		}
+
+		protected abstract T item(AVLTree.IAVLNode node);
+	}
+
+	private Iterator<Integer> keyIterator() {
+		return new NodeIterator<Integer>() {
+			protected Integer item(AVLTree.IAVLNode node) {
+				return node.getKey();
+			}
+		};
+	}
+
+	/**
+	 * private class EntrySet
+	 * <p>
+	 * The entries of the view, as immutable snapshots of the items.
+	 */
+	private class EntrySet extends AbstractSet<Entry<Integer, String>> {
+		@Override
+		public Iterator<Entry<Integer, String>> iterator() {
+			return new NodeIterator<Entry<Integer, String>>() {
+				protected Entry<Integer, String> item(AVLTree.IAVLNode node) {
+					return entry(node);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return NavigableAVLMap.this.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Entry)) return false;
+			Entry<?, ?> entry = (Entry<?, ?>) o;
+			AVLTree.IAVLNode node = nodeOf(entry.getKey());
+			return node != null && Objects.equals(node.getValue(), entry.getValue());
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!contains(o)) return false;
+			NavigableAVLMap.this.tree.delete((Integer) ((Entry<?, ?>) o).getKey());
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			NavigableAVLMap.this.clear();
+		}
+	}
+
+	/**
+	 * private static class KeySet
+	 * <p>
+	 * The keys of a view, as a NavigableSet backed by the view.
+	 */
+	private static class KeySet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+		private final NavigableAVLMap map;
+
+		private KeySet(NavigableAVLMap map) {
+			this.map = map;
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return this.map.keyIterator();
+		}
+
+		@Override
+		public Iterator<Integer> descendingIterator() {
+			return ((NavigableAVLMap) this.map.descendingMap()).keyIterator();
+		}
+
+		@Override
+		public int size() {
+			return this.map.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return this.map.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return this.map.containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			AVLTree.IAVLNode node = this.map.nodeOf(o);
+			if (node == null) return false;
+			this.map.tree.delete(node.getKey());
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			this.map.clear();
+		}
+
+		@Override
+		public Comparator<? super Integer> comparator() {
+			return this.map.comparator();
+		}
+
+		@Override
+		public Integer first() {
+			return this.map.firstKey();
+		}
+
+		@Override
+		public Integer last() {
+			return this.map.lastKey();
+		}
+
+		@Override
+		public Integer lower(Integer e) {
+			return this.map.lowerKey(e);
+		}
+
+		@Override
+		public Integer floor(Integer e) {
+			return this.map.floorKey(e);
+		}
+
+		@Override
+		public Integer ceiling(Integer e) {
+			return this.map.ceilingKey(e);
+		}
+
+		@Override
+		public Integer higher(Integer e) {
+			return this.map.higherKey(e);
+		}
+
+		@Override
+		public Integer pollFirst() {
+			return key(this.map.firstNode(), true);
+		}
+
+		@Override
+		public Integer pollLast() {
+			return key(this.map.lastNode(), true);
+		}
+
+		// Returns node's key, deleting it from the tree if delete is set.
+		private Integer key(AVLTree.IAVLNode node, boolean delete) {
+			if (node == null) return null;
+			int k = node.getKey();
+			if (delete) this.map.tree.delete(k);
+			return k;
+		}
+
+		@Override
+		public NavigableSet<Integer> descendingSet() {
+			return this.map.descendingMap().navigableKeySet();
+		}
+
+		@Override
+		public NavigableSet<Integer> subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+			return this.map.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+		}
+
+		@Override
+		public NavigableSet<Integer> headSet(Integer toElement, boolean inclusive) {
+			return this.map.headMap(toElement, inclusive).navigableKeySet();
+		}
+
+		@Override
+		public NavigableSet<Integer> tailSet(Integer fromElement, boolean inclusive) {
+			return this.map.tailMap(fromElement, inclusive).navigableKeySet();
+		}
+
+		@Override
+		public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<Integer> headSet(Integer toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<Integer> tailSet(Integer fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ * NodeHashIndex
+ *
+ * An open-addressing hash table from int keys to the nodes of an AVLTree (see AVLTree.setHashIndex).
+ * Linear probing over a parallel array of primitive keys, so a probe compares ints without touching nodes.
+ * Deletion shifts the following entries of the cluster back instead of leaving tombstones,
+ * so lookups never slow down as keys come and go.
+ *
+ */
+
+
+public final class NodeHashIndex {
+
+	private static final int MIN_CAPACITY = 16; // A power of 2.
+
+	private int[] keys;
+	private AVLTree.AVLNode[] nodes; // nodes[i] == null marks an empty slot.
+	private int mask;
+	private int size;
+
+	/**
+	 * public NodeHashIndex(int expectedSize)
+	 * <p>
+	 * Creates an empty index with room for expectedSize keys before it grows.
+	 * </p>
+	 */
+	public NodeHashIndex(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) { // Load factor at most 1/2.
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.nodes = new AVLTree.AVLNode[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * public AVLTree.AVLNode get(int key)
+	 * <p>
+	 * Returns the node of key, or null if key is not indexed.
+	 * Complexity: O(1) expected
+	 * </p>
+	 */
+	public AVLTree.AVLNode get(int key) {
+		int[] keys = this.keys;
+		AVLTree.AVLNode[] nodes = this.nodes;
+		for (int slot = hash(key) & this.mask; ; slot = (slot + 1) & this.mask) {
+			AVLTree.AVLNode node = nodes[slot];
+			if (node == null) return null;
+			if (keys[slot] == key) return node;
+		}
+	}
+
+	/**
+	 * public void put(int key, AVLTree.AVLNode node)
+	 * <p>
+	 * Maps key to node, replacing the previous node of key if any.
+	 * Complexity: O(1) expected (amortized over the growths)
+	 * </p>
+	 */
+	public void put(int key, AVLTree.AVLNode node) {
+		if (2 * (this.size + 1) > this.nodes.length) grow();
+		int slot = hash(key) & this.mask;
+		while (this.nodes[slot] != null) {
+			if (this.keys[slot] == key) {
+				this.nodes[slot] = node;
+				return;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = key;
+		this.nodes[slot] = node;
+		this.size++;
+	}
+
+	/**
+	 * public void remove(int key)
+	 * <p>
+	 * Removes key from the index, if it is there.
+	 * Every following entry of the cluster which the gap cuts off from its home slot is moved into the gap,
+	 * so the table stays as if key was never inserted.
+	 * Complexity: O(1) expected
+	 * </p>
+	 */
+	public void remove(int key) {
+		int gap = hash(key) & this.mask;
+		while (true) {
+			if (this.nodes[gap] == null) return; // Not indexed.
+			if (this.keys[gap] == key) break;
+			gap = (gap + 1) & this.mask;
+		}
+		for (int slot = (gap + 1) & this.mask; this.nodes[slot] != null; slot = (slot + 1) & this.mask) {
+			int home = hash(this.keys[slot]) & this.mask;
+			if (((slot - home) & this.mask) >= ((slot - gap) & this.mask)) { // home is not in (gap, slot], move it back.
+				this.keys[gap] = this.keys[slot];
+				this.nodes[gap] = this.nodes[slot];
+				gap = slot;
+			}
+		}
+		this.nodes[gap] = null;
+		this.size--;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of indexed keys.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * public long sizeInBytes()
+	 * <p>
+	 * Returns the memory taken by the table (an int and a reference per slot, at 4 bytes for compressed references).
+	 * </p>
+	 */
+	public long sizeInBytes() {
+		return (long) this.nodes.length * (Integer.BYTES + 4);
+	}
+
+	// Doubles the table, reinserting all entries.
+	private void grow() {
+		int[] oldKeys = this.keys;
+		AVLTree.AVLNode[] oldNodes = this.nodes;
+		allocate(oldNodes.length << 1);
+		for (int i = 0; i < oldNodes.length; i++) {
+			if (oldNodes[i] == null) continue;
+			int slot = hash(oldKeys[i]) & this.mask;
+			while (this.nodes[slot] != null) {
+				slot = (slot + 1) & this.mask;
+			}
+			this.keys[slot] = oldKeys[i];
+			this.nodes[slot] = oldNodes[i];
+		}
+	}
+
+	// Fibonacci hashing: the multiplication moves all key bits into the high bits, which the fold brings down.
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
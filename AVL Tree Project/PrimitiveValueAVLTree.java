@@ -0,0 +1,93 @@
+/**
+ *
+ * PrimitiveValueAVLTree
+ *
+ * The shared part of the AVL Trees with distinct integer keys and primitive number values
+ * (IntIntAVLTree, IntLongAVLTree). Values are stored unboxed in the nodes, the balancing code is shared with AVLTree.
+ * The String based AVLTree methods keep working: an info is the decimal form of a value,
+ * parsed by insert, compute and setValue, and printed on demand by search and the exports (nodes keep no String).
+ *
+ */
+
+
+public abstract class PrimitiveValueAVLTree extends AVLTree {
+
+	/**
+	 * protected abstract long parseValue(String i)
+	 * <p>
+	 * Returns the value whose decimal form is i.
+	 * Throws NumberFormatException if i is null or not a number in the range of the tree's values.
+	 * </p>
+	 */
+	protected abstract long parseValue(String i);
+
+	/**
+	 * protected abstract PrimitiveNode newPrimitiveNode(int k, long v)
+	 * <p>
+	 * Creates the subclass' node for an item with key k and value v.
+	 * </p>
+	 */
+	protected abstract PrimitiveNode newPrimitiveNode(int k, long v);
+
+	/**
+	 * protected AVLNode newNode(int k, String i)
+	 * <p>
+	 * Creates the node for key k with the value parsed from i (used by insert(int, String) and compute).
+	 * Throws NumberFormatException if i is not a valid value.
+	 * Complexity: O(length of i)
+	 * </p>
+	 */
+	@Override
+	protected AVLNode newNode(int k, String i) {
+		return newPrimitiveNode(k, parseValue(i));
+	}
+
+	@Override
+	protected AVLNode copyNode(AVLNode node) {
+		return newPrimitiveNode(node.getKey(), ((PrimitiveNode) node).primitiveValue);
+	}
+
+	/**
+	 * protected long searchPrimitive(int k, long missingValue)
+	 * <p>
+	 * Returns the value of an item with key k if it exists in the tree,
+	 * otherwise returns missingValue.
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	protected long searchPrimitive(int k, long missingValue) {
+		AVLNode node = searchNode(k);
+		if (node == null) return missingValue;
+		return ((PrimitiveNode) node).primitiveValue;
+	}
+
+	/**
+	 * public class PrimitiveNode
+	 * <p>
+	 * An AVL node with a primitive value.
+	 * getValue returns the decimal form of the value, printed on each call.
+	 */
+	public class PrimitiveNode extends AVLNode {
+		private long primitiveValue;
+
+		public PrimitiveNode(int key, long value) {
+			super(key, null);
+			this.primitiveValue = value;
+		}
+
+		protected long primitiveValue() {
+			return this.primitiveValue;
+		}
+
+		// Sets the value parsed from value, throws NumberFormatException if it is not a valid value.
+		@Override
+		public void setValue(String value) {
+			this.primitiveValue = parseValue(value);
+		}
+
+		@Override
+		public String getValue() {
+			return Long.toString(this.primitiveValue);
+		}
+	}
+}
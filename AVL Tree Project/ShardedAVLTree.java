@@ -0,0 +1,477 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ *
+ * ShardedAVLTree
+ *
+ * A thread safe map from integer keys to String infos, partitioned by key range into a fixed number
+ * of AVLTree shards. Shard i holds the keys in [lowerBounds[i], lowerBounds[i + 1]) and has its own read-write lock,
+ * so writers of different ranges run in parallel, and readers (search, min, max, the exports and range visits)
+ * share a shard with each other. Shard reads must not change the shard (its trees have no front cache or hash index,
+ * and the exports go through exportTo, not the export cache). The shard boundaries are guarded by a read-write lock:
+ * single key operations take it for reading, and rebalancing the shards (with join and split) takes it for writing.
+ *
+ */
+
+
+public class ShardedAVLTree {
+
+	// A shard is rebalanced only when it holds more than this many items,
+	// and more than SKEW_FACTOR times the average shard size.
+	private static final int MIN_REBALANCE_SIZE = 1024;
+	private static final int SKEW_FACTOR = 2;
+
+	private final AVLTree[] shards;
+	private final int[] lowerBounds; // lowerBounds[0] is Integer.MIN_VALUE.
+	private final ReentrantReadWriteLock[] shardLocks;
+	private final ReentrantReadWriteLock routingLock = new ReentrantReadWriteLock();
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * public ShardedAVLTree(int shardCount)
+	 * <p>
+	 * Creates an empty tree with shardCount shards, splitting the whole int range evenly.
+	 * Boundaries move to the actual key distribution when shards get skewed.
+	 * </p>
+	 */
+	public ShardedAVLTree(int shardCount) {
+		this(evenSplitKeys(shardCount));
+	}
+
+	/**
+	 * public ShardedAVLTree(int[] splitKeys)
+	 * <p>
+	 * Creates an empty tree with splitKeys.length + 1 shards, shard i + 1 starts at splitKeys[i].
+	 * precondition: splitKeys is strictly increasing
+	 * </p>
+	 */
+	public ShardedAVLTree(int[] splitKeys) {
+		int shardCount = splitKeys.length + 1;
+		this.shards = new AVLTree[shardCount];
+		this.lowerBounds = new int[shardCount];
+		this.shardLocks = new ReentrantReadWriteLock[shardCount];
+		this.lowerBounds[0] = Integer.MIN_VALUE;
+		for (int i = 0; i < splitKeys.length; i++) {
+			if (splitKeys[i] <= this.lowerBounds[i]) throw new IllegalArgumentException("Split keys must be strictly increasing and greater than Integer.MIN_VALUE");
+			this.lowerBounds[i + 1] = splitKeys[i];
+		}
+		for (int i = 0; i < shardCount; i++) {
+			this.shards[i] = new AVLTree();
+			this.shardLocks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * private static int[] evenSplitKeys(int shardCount)
+	 * <p>
+	 * Returns shardCount - 1 keys which split the int range to shardCount even parts.
+	 * </p>
+	 */
+	private static int[] evenSplitKeys(int shardCount) {
+		if (shardCount < 1) throw new IllegalArgumentException("Shard count must be positive, got " + shardCount);
+		int[] splitKeys = new int[shardCount - 1];
+		long width = (1L << 32) / shardCount;
+		for (int i = 0; i < splitKeys.length; i++) {
+			splitKeys[i] = (int) (Integer.MIN_VALUE + width * (i + 1));
+		}
+		return splitKeys;
+	}
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * Returns true if and only if the tree is empty.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public boolean empty() {
+		return this.size.get() == 0;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items in all shards, kept in an atomic counter so no lock is taken.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * public int shardCount()
+	 * <p>
+	 * Returns the number of shards.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int shardCount() {
+		return this.shards.length;
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * Returns the info of an item with key k if it exists in the tree, otherwise returns null.
+	 * Read locks only the shard of k, so searches of the same shard run in parallel.
+	 * Complexity: O(log N + log n)
+	 * </p>
+	 */
+	public String search(int k) {
+		this.routingLock.readLock().lock();
+		try {
+			int index = shardIndex(k);
+			this.shardLocks[index].readLock().lock();
+			try {
+				return this.shards[index].search(k);
+			} finally {
+				this.shardLocks[index].readLock().unlock();
+			}
+		} finally {
+			this.routingLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * Inserts an item with key k and info i to the shard of k.
+	 * Returns the number of re-balancing operations of the shard, or -1 if an item with key k already exists.
+	 * Rebalances the shards if k's shard became much larger than the average.
+	 * Complexity: O(log N + log n), amortized with the shard rebalancing.
+	 * </p>
+	 */
+	public int insert(int k, String i) {
+		int changeCounter;
+		boolean skewed;
+		this.routingLock.readLock().lock();
+		try {
+			int index = shardIndex(k);
+			this.shardLocks[index].writeLock().lock();
+			try {
+				changeCounter = this.shards[index].insert(k, i);
+				if (changeCounter != -1) this.size.incrementAndGet();
+				skewed = isSkewed(this.shards[index].size());
+			} finally {
+				this.shardLocks[index].writeLock().unlock();
+			}
+		} finally {
+			this.routingLock.readLock().unlock();
+		}
+		if (skewed) rebalanceIfSkewed();
+		return changeCounter;
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * Deletes an item with key k from the tree if it exists.
+	 * Returns the number of re-balancing operations of the shard, or -1 if an item with key k was not found.
+	 * Complexity: O(log N + log n)
+	 * </p>
+	 */
+	public int delete(int k) {
+		this.routingLock.readLock().lock();
+		try {
+			int index = shardIndex(k);
+			this.shardLocks[index].writeLock().lock();
+			try {
+				int changeCounter = this.shards[index].delete(k);
+				if (changeCounter != -1) this.size.decrementAndGet();
+				return changeCounter;
+			} finally {
+				this.shardLocks[index].writeLock().unlock();
+			}
+		} finally {
+			this.routingLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key, or null if the tree is empty.
+	 * Complexity: O(N)
+	 * </p>
+	 */
+	public String min() {
+		lockAll();
+		try {
+			for (AVLTree shard : this.shards) {
+				if (!shard.empty()) return shard.min();
+			}
+			return null;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key, or null if the tree is empty.
+	 * Complexity: O(N)
+	 * </p>
+	 */
+	public String max() {
+		lockAll();
+		try {
+			for (int i = this.shards.length - 1; i >= 0; i--) {
+				if (!this.shards[i].empty()) return this.shards[i].max();
+			}
+			return null;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array of all keys, taken from a consistent snapshot of all shards.
+	 * Complexity: O(n + N)
+	 * </p>
+	 */
+	public int[] keysToArray() {
+		lockAll();
+		try {
+			int[] keys = new int[this.size.get()];
+			int index = 0;
+			for (AVLTree shard : this.shards) { // Shards are ordered by key range.
+				shard.exportTo(keys, null, index);
+				index += shard.size();
+			}
+			return keys;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array of all infos, sorted by their respective keys, taken from a consistent snapshot of all shards.
+	 * Complexity: O(n + N)
+	 * </p>
+	 */
+	public String[] infoToArray() {
+		lockAll();
+		try {
+			String[] values = new String[this.size.get()];
+			int index = 0;
+			for (AVLTree shard : this.shards) {
+				shard.exportTo(null, values, index);
+				index += shard.size();
+			}
+			return values;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * public void forEachInRange(int lo, int hi, EntryVisitor visitor)
+	 * <p>
+	 * Visits the items with lo <= key <= hi in key order. Only the shards which overlap [lo, hi] are read locked,
+	 * together, so the visited items are a consistent snapshot of the range.
+	 * The visitor must not modify this tree.
+	 * Complexity: O(log n + k) for k visited items, per overlapped shard.
+	 * </p>
+	 */
+	public void forEachInRange(int lo, int hi, EntryVisitor visitor) {
+		if (lo > hi) return;
+		this.routingLock.readLock().lock();
+		try {
+			int first = shardIndex(lo);
+			int last = shardIndex(hi);
+			for (int i = first; i <= last; i++) { // Ascending order, as in lockAll.
+				this.shardLocks[i].readLock().lock();
+			}
+			try {
+				for (int i = first; i <= last; i++) {
+					recForEachInRange(this.shards[i].getRoot(), lo, hi, visitor);
+				}
+			} finally {
+				for (int i = last; i >= first; i--) {
+					this.shardLocks[i].readLock().unlock();
+				}
+			}
+		} finally {
+			this.routingLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * private static void recForEachInRange(IAVLNode node, int lo, int hi, EntryVisitor visitor)
+	 * <p>
+	 * Visits the items of node's subtree with lo <= key <= hi in order, skipping subtrees outside the range.
+	 * Supports forEachInRange method.
+	 * </p>
+	 */
+	private static void recForEachInRange(AVLTree.IAVLNode node, int lo, int hi, EntryVisitor visitor) {
+		if (node == null || !node.isRealNode()) return;
+		if (node.getKey() > lo) recForEachInRange(node.getLeft(), lo, hi, visitor);
+		if (node.getKey() >= lo && node.getKey() <= hi) visitor.visit(node.getKey(), node.getValue());
+		if (node.getKey() < hi) recForEachInRange(node.getRight(), lo, hi, visitor);
+	}
+
+	/**
+	 * public void rebalanceShards()
+	 * <p>
+	 * Moves the shard boundaries so that all shards hold (almost) the same number of items.
+	 * All shards are joined into one tree, which is split again before the nodes of ranks size * i / N.
+	 * Blocks all other operations while running, so it is left to the caller to choose when to pay for it:
+	 * inserts only rebalance a skewed shard with one neighbour (see rebalanceIfSkewed).
+	 * Complexity: O(N log n)
+	 * </p>
+	 */
+	public void rebalanceShards() {
+		this.routingLock.writeLock().lock();
+		try {
+			int shardCount = this.shards.length;
+			int total = this.size.get();
+			if (shardCount == 1 || total < shardCount) return; // Boundaries must stay distinct keys.
+			AVLTree combined = this.shards[0];
+			for (int i = 1; i < shardCount; i++) {
+				combined = concatenate(combined, this.shards[i]);
+			}
+			for (int i = shardCount - 1; i > 0; i--) {
+				combined = splitShards(combined, i, (int) ((long) total * i / shardCount));
+			}
+			this.shards[0] = combined;
+		} finally {
+			this.routingLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * private void rebalanceIfSkewed()
+	 * <p>
+	 * If the largest shard is still skewed once the write lock is held (so concurrent writers which saw
+	 * the same skew rebalance only once), splits its items evenly with its smaller neighbour.
+	 * Only these two shards are touched, the other shards keep their trees and boundaries.
+	 * Complexity: O(N + log n)
+	 * </p>
+	 */
+	private void rebalanceIfSkewed() {
+		this.routingLock.writeLock().lock();
+		try {
+			int last = this.shards.length - 1;
+			int largest = 0;
+			for (int i = 1; i <= last; i++) {
+				if (this.shards[i].size() > this.shards[largest].size()) largest = i;
+			}
+			if (last == 0 || !isSkewed(this.shards[largest].size())) return;
+			int left; // The pair is shards left and left + 1.
+			if (largest == 0) {
+				left = 0;
+			}
+			else if (largest == last || this.shards[largest - 1].size() <= this.shards[largest + 1].size()) {
+				left = largest - 1;
+			}
+			else {
+				left = largest;
+			}
+			AVLTree pair = concatenate(this.shards[left], this.shards[left + 1]);
+			this.shards[left] = splitShards(pair, left + 1, pair.size() / 2);
+		} finally {
+			this.routingLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * private AVLTree splitShards(AVLTree tree, int shard, int rank)
+	 * <p>
+	 * Splits tree before its node of the given rank: that node and the ones after it become the given shard,
+	 * whose lower bound becomes the node's key. Returns the nodes before it.
+	 * The nodes are relinked by position, none is deleted or inserted again.
+	 * precondition: the routing write lock is held, 0 < rank < tree.size()
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private AVLTree splitShards(AVLTree tree, int shard, int rank) {
+		AVLTree.AVLNode pivot = tree.selectNode(rank);
+		int pivotKey = pivot.getKey();
+		AVLTree[] parts = tree.splitBeforeNode(pivot);
+		this.shards[shard] = parts[1];
+		this.lowerBounds[shard] = pivotKey;
+		return parts[0];
+	}
+
+	/**
+	 * private static AVLTree concatenate(AVLTree smaller, AVLTree bigger)
+	 * <p>
+	 * Returns a tree with the items of both trees, using the minimum of bigger as the join node:
+	 * the minimum is split off bigger rather than deleted, so it is relinked instead of copied.
+	 * Neither tree may be used afterwards.
+	 * precondition: keys(smaller) < keys(bigger)
+	 * Complexity: O(log n)
+	 * </p>
+	 */
+	private static AVLTree concatenate(AVLTree smaller, AVLTree bigger) {
+		if (bigger.empty()) return smaller;
+		AVLTree.AVLNode joinNode = bigger.selectNode(0);
+		AVLTree rest = bigger.splitAtNode(joinNode)[1];
+		smaller.join(joinNode, rest);
+		return smaller;
+	}
+
+	/**
+	 * private boolean isSkewed(int shardSize)
+	 * <p>
+	 * Returns true if a shard of shardSize items is large enough, and much larger than the average shard.
+	 * </p>
+	 */
+	private boolean isSkewed(int shardSize) {
+		return shardSize > MIN_REBALANCE_SIZE && shardSize > SKEW_FACTOR * (this.size.get() / this.shards.length + 1);
+	}
+
+	/**
+	 * private int shardIndex(int k)
+	 * <p>
+	 * Returns the index of the shard whose range contains k (binary search over the lower bounds).
+	 * precondition: the routing lock is held
+	 * Complexity: O(log N)
+	 * </p>
+	 */
+	private int shardIndex(int k) {
+		int low = 0;
+		int high = this.lowerBounds.length - 1;
+		while (low < high) { // The last lower bound which is <= k.
+			int middle = (low + high + 1) >>> 1;
+			if (this.lowerBounds[middle] <= k) {
+				low = middle;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	// Takes the routing read lock and the read locks of all shards, in ascending order to avoid deadlocks.
+	private void lockAll() {
+		this.routingLock.readLock().lock();
+		for (ReentrantReadWriteLock shardLock : this.shardLocks) {
+			shardLock.readLock().lock();
+		}
+	}
+
+	private void unlockAll() {
+		for (int i = this.shardLocks.length - 1; i >= 0; i--) {
+			this.shardLocks[i].readLock().unlock();
+		}
+		this.routingLock.readLock().unlock();
+	}
+
+	/**
+	 * public interface EntryVisitor
+	 * <p>
+	 * Receives the items of forEachInRange.
+	 */
+	public interface EntryVisitor {
+		public void visit(int key, String info);
+	}
+}
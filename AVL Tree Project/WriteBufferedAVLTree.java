@@ -0,0 +1,214 @@
+/**
+ *
+ * WriteBufferedAVLTree
+ *
+ * An AVLTree with a small write buffer in front of it, for write-heavy bursts (as the memtable of an LSM tree).
+ * put and remove only go into a sorted run of primitive arrays (removes as tombstones), and the run is merged
+ * into the tree in one ascending pass when it is full. Ascending finger inserts make the merge's descents short.
+ * search looks at the run first, so it always sees the latest write.
+ *
+ */
+
+
+public class WriteBufferedAVLTree {
+
+	private final AVLTree tree;
+
+	// The sorted run: bufferKeys[0 .. bufferSize - 1] ascending, with the info or a tombstone of each key.
+	private final int[] bufferKeys;
+	private final String[] bufferValues;
+	private final boolean[] tombstones;
+	private int bufferSize;
+
+	/**
+	 * public WriteBufferedAVLTree(int bufferCapacity)
+	 * <p>
+	 * Creates an empty tree whose write buffer holds up to bufferCapacity keys.
+	 * </p>
+	 */
+	public WriteBufferedAVLTree(int bufferCapacity) {
+		this(new AVLTree(), bufferCapacity);
+	}
+
+	/**
+	 * public WriteBufferedAVLTree(AVLTree tree, int bufferCapacity)
+	 * <p>
+	 * Buffers the writes to tree, which must not be changed directly afterwards (use getTree).
+	 * </p>
+	 */
+	public WriteBufferedAVLTree(AVLTree tree, int bufferCapacity) {
+		if (bufferCapacity < 1) throw new IllegalArgumentException("Buffer capacity must be positive, got " + bufferCapacity);
+		this.tree = tree;
+		this.bufferKeys = new int[bufferCapacity];
+		this.bufferValues = new String[bufferCapacity];
+		this.tombstones = new boolean[bufferCapacity];
+	}
+
+	/**
+	 * public void put(int k, String i)
+	 * <p>
+	 * Sets the info of key k to i, inserting k if it doesn't exist (an upsert, unlike AVLTree.insert,
+	 * since checking for k in the tree would cost the descent the buffer saves).
+	 * Complexity: O(log B + B) for a buffer of capacity B, plus an amortized O(log n) share of the merge.
+	 * </p>
+	 */
+	public void put(int k, String i) {
+		buffer(k, i, false);
+	}
+
+	/**
+	 * public void remove(int k)
+	 * <p>
+	 * Deletes key k if it exists, by buffering a tombstone.
+	 * Complexity: same as put.
+	 * </p>
+	 */
+	public void remove(int k) {
+		buffer(k, null, true);
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * Returns the info of key k, or null if k doesn't exist (or was removed).
+	 * The buffer is searched first, then the tree.
+	 * Complexity: O(log B + log n)
+	 * </p>
+	 */
+	public String search(int k) {
+		int index = bufferIndex(k);
+		if (index >= 0) return this.tombstones[index] ? null : this.bufferValues[index];
+		return this.tree.search(k);
+	}
+
+	/**
+	 * public void flush()
+	 * <p>
+	 * Merges the buffered writes into the tree, in ascending key order, and empties the buffer.
+	 * Puts use fingerPut (one descent, which links a new key or updates an existing one in place), removes use delete.
+	 * Complexity: O(B log(n / B)) amortized for B buffered keys spread over the tree
+	 * </p>
+	 */
+	public void flush() {
+		for (int index = 0; index < this.bufferSize; index++) {
+			int k = this.bufferKeys[index];
+			if (this.tombstones[index]) {
+				this.tree.delete(k);
+			}
+			else {
+				this.tree.fingerPut(k, this.bufferValues[index]);
+			}
+			this.bufferValues[index] = null;
+		}
+		this.bufferSize = 0;
+	}
+
+	/**
+	 * public int bufferedWrites()
+	 * <p>
+	 * Returns the number of keys in the buffer.
+	 * Complexity: O(1)
+	 * </p>
+	 */
+	public int bufferedWrites() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * public AVLTree getTree()
+	 * <p>
+	 * Flushes the buffer and returns the tree, for its other (read or write) operations.
+	 * Complexity: same as flush.
+	 * </p>
+	 */
+	public AVLTree getTree() {
+		flush();
+		return this.tree;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items, after flushing the buffer.
+	 * Complexity: same as flush.
+	 * </p>
+	 */
+	public int size() {
+		return getTree().size();
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array of all keys, after flushing the buffer.
+	 * Complexity: O(n) plus flush.
+	 * </p>
+	 */
+	public int[] keysToArray() {
+		return getTree().keysToArray();
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array of all infos sorted by their keys, after flushing the buffer.
+	 * Complexity: O(n) plus flush.
+	 * </p>
+	 */
+	public String[] infoToArray() {
+		return getTree().infoToArray();
+	}
+
+	/**
+	 * private void buffer(int k, String i, boolean tombstone)
+	 * <p>
+	 * Records a write of k in the buffer, replacing an earlier buffered write of k.
+	 * Flushes first if k is new and the buffer is full.
+	 * </p>
+	 */
+	private void buffer(int k, String i, boolean tombstone) {
+		int index = bufferIndex(k);
+		if (index < 0) {
+			if (this.bufferSize == this.bufferKeys.length) {
+				flush();
+				index = -1; // The buffer is empty, k goes first.
+			}
+			index = -index - 1; // Insertion point.
+			int moved = this.bufferSize - index;
+			System.arraycopy(this.bufferKeys, index, this.bufferKeys, index + 1, moved);
+			System.arraycopy(this.bufferValues, index, this.bufferValues, index + 1, moved);
+			System.arraycopy(this.tombstones, index, this.tombstones, index + 1, moved);
+			this.bufferKeys[index] = k;
+			this.bufferSize++;
+		}
+		this.bufferValues[index] = i;
+		this.tombstones[index] = tombstone;
+	}
+
+	/**
+	 * private int bufferIndex(int k)
+	 * <p>
+	 * Binary search of k in the buffer.
+	 * Returns k's index, or (-(insertion point) - 1) if k is not buffered.
+	 * Complexity: O(log B)
+	 * </p>
+	 */
+	private int bufferIndex(int k) {
+		int low = 0;
+		int high = this.bufferSize - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleKey = this.bufferKeys[middle];
+			if (middleKey < k) {
+				low = middle + 1;
+			}
+			else if (middleKey > k) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -low - 1;
+	}
+}